@@ -0,0 +1,21 @@
+-- Fills the typed value columns of cells written before value types existed.
+-- Run once after the application has added the columns (ddl-auto=update).
+-- Dates are left as STRING, they were stored in a non-ISO form.
+
+BEGIN;
+
+UPDATE cells
+SET value_type = 'NUMBER', numeric_value = cell_value::double precision
+WHERE value_type IS NULL
+  AND cell_value ~ '^[-+]?([0-9]+\.?[0-9]*|\.[0-9]+)([eE][-+]?[0-9]+)?$';
+
+UPDATE cells
+SET value_type = 'BOOLEAN', boolean_value = (lower(cell_value) = 'true')
+WHERE value_type IS NULL
+  AND lower(cell_value) IN ('true', 'false');
+
+UPDATE cells
+SET value_type = 'STRING'
+WHERE value_type IS NULL;
+
+COMMIT;
@@ -0,0 +1,18 @@
+-- Makes idx_sheet_row_col unique on an existing PostgreSQL database.
+-- Hibernate (ddl-auto=update) does not alter an index that already exists,
+-- and cell upserts (INSERT ... ON CONFLICT) need the unique index.
+
+BEGIN;
+
+-- Keep only the most recent cell of each coordinate
+DELETE FROM cells c
+USING cells d
+WHERE c.sheet_id = d.sheet_id
+  AND c.row_index = d.row_index
+  AND c.column_index = d.column_index
+  AND c.id < d.id;
+
+DROP INDEX IF EXISTS idx_sheet_row_col;
+CREATE UNIQUE INDEX idx_sheet_row_col ON cells (sheet_id, row_index, column_index);
+
+COMMIT;
@@ -0,0 +1,94 @@
+package com.osivia.spreadsheet.api.controller;
+
+import com.osivia.spreadsheet.api.dto.JobDTO;
+import com.osivia.spreadsheet.api.service.JobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Imports and exports run as background jobs: submitting one answers 202 with the job,
+ * which is then polled for its status and progress, and whose result is downloaded once it has succeeded.
+ */
+@RestController
+@RequestMapping("/jobs")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class JobController {
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<JobDTO> importFromExcel(
+            @RequestParam("file") MultipartFile file,
+            Principal principal) throws IOException {
+        JobDTO job = jobService.submitExcelImport(file, principal.getName());
+        return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/import/zip")
+    public ResponseEntity<JobDTO> importFromZip(
+            @RequestParam("file") MultipartFile file,
+            Principal principal) throws IOException {
+        String filename = file.getOriginalFilename();
+        if (!"application/zip".equals(file.getContentType()) &&
+                !"application/x-zip-compressed".equals(file.getContentType()) &&
+                (filename == null || !filename.toLowerCase().endsWith(".zip"))) {
+            throw new IllegalArgumentException("File must be a ZIP archive");
+        }
+        JobDTO job = jobService.submitZipImport(file, principal.getName());
+        return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/export/{spreadsheetId}")
+    public ResponseEntity<JobDTO> exportToExcel(
+            @PathVariable Long spreadsheetId,
+            Principal principal) {
+        JobDTO job = jobService.submitExcelExport(spreadsheetId, principal.getName());
+        return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("/export/{spreadsheetId}/zip")
+    public ResponseEntity<JobDTO> exportToZip(
+            @PathVariable Long spreadsheetId,
+            Principal principal) {
+        JobDTO job = jobService.submitZipExport(spreadsheetId, principal.getName());
+        return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobDTO> getJob(
+            @PathVariable String id,
+            Principal principal) {
+        return ResponseEntity.ok(jobService.getJob(id, principal.getName()));
+    }
+
+    /**
+     * File written by an export job, 400 while the job has not succeeded
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<Resource> downloadResult(
+            @PathVariable String id,
+            Principal principal) {
+        JobDTO job = jobService.getJob(id, principal.getName());
+        Resource result = new FileSystemResource(jobService.getResult(id, principal.getName()));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", job.getFilename());
+        return ResponseEntity.ok()
+            .headers(headers)
+            .body(result);
+    }
+}
@@ -2,13 +2,23 @@ package com.osivia.spreadsheet.api.controller;
 
 
 import com.osivia.spreadsheet.api.dto.*;
+import com.osivia.spreadsheet.api.entity.CellRange;
+import com.osivia.spreadsheet.api.service.CsvEncoder;
+import com.osivia.spreadsheet.api.service.SheetJsonWriter;
 import com.osivia.spreadsheet.api.service.SpreadsheetService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.Principal;
 
 @RestController
@@ -19,8 +29,11 @@ public class SheetController {
 
     private final SpreadsheetService spreadsheetService;
 
-    public SheetController(SpreadsheetService spreadsheetService) {
+    private final SheetJsonWriter sheetJsonWriter;
+
+    public SheetController(SpreadsheetService spreadsheetService, SheetJsonWriter sheetJsonWriter) {
         this.spreadsheetService = spreadsheetService;
+        this.sheetJsonWriter = sheetJsonWriter;
     }
 
     @PostMapping("/spreadsheet/{spreadsheetId}")
@@ -31,19 +44,140 @@ public class SheetController {
         SheetDTO sheet = spreadsheetService.createSheet(
             spreadsheetId, 
             request.getName(), 
+            request.getStorageMode(),
             principal.getName()
         );
         return new ResponseEntity<>(sheet, HttpStatus.CREATED);
     }
     
+    /**
+     * Returns the sheet with all its cells, streamed to the client as they are read.
+     * The sheet version is sent as ETag: when it still matches If-None-Match the answer
+     * is 304 and the cells are not read.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<SheetDTO> getSheet(
+    public ResponseEntity<StreamingResponseBody> getSheet(
+            @PathVariable Long id,
+            WebRequest request,
+            Principal principal) {
+        // Checked before the response starts, so that errors still get their status
+        SheetDTO header = spreadsheetService.getSheetHeader(id, principal.getName());
+        String eTag = eTag(header, null);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        StreamingResponseBody body = out -> sheetJsonWriter.write(header, out);
+        // The ETag header has been set by checkNotModified
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+    
+    /**
+     * Returns the sheet in the dense row-major format, as JSON, Smile or CBOR depending on the Accept header
+     */
+    @GetMapping(value = "/{id}", produces = {
+        SheetJsonWriter.DENSE_JSON_VALUE, SheetJsonWriter.SMILE_VALUE, SheetJsonWriter.CBOR_VALUE })
+    public ResponseEntity<StreamingResponseBody> getDenseSheet(
             @PathVariable Long id,
+            @RequestHeader(HttpHeaders.ACCEPT) String accept,
+            WebRequest request,
             Principal principal) {
-        SheetDTO sheet = spreadsheetService.getSheet(id, principal.getName());
-        return ResponseEntity.ok(sheet);
+        SheetDTO header = spreadsheetService.getSheetHeader(id, principal.getName());
+        MediaType mediaType = SheetJsonWriter.selectDenseType(accept);
+        String eTag = eTag(header, mediaType);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        StreamingResponseBody body = out -> sheetJsonWriter.writeDense(header, mediaType, out);
+        // The ETag header has been set by checkNotModified
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(mediaType)
+            .body(body);
     }
     
+    /**
+     * Reads the cells of a range, given in A1 notation (range=A1:AD60) or by 0-based bounds,
+     * one page at a time; pass nextAfterRow and nextAfterCol back as afterRow and afterCol
+     */
+    @GetMapping("/{id}/cells")
+    public ResponseEntity<CellPageDTO> getCells(
+            @PathVariable Long id,
+            @RequestParam(required = false) String range,
+            @RequestParam(required = false) Integer startRow,
+            @RequestParam(required = false) Integer endRow,
+            @RequestParam(required = false) Integer startCol,
+            @RequestParam(required = false) Integer endCol,
+            @RequestParam(required = false) Integer afterRow,
+            @RequestParam(required = false) Integer afterCol,
+            @RequestParam(defaultValue = "1000") int limit,
+            Principal principal) {
+        CellRange cellRange = cellRange(range, startRow, endRow, startCol, endCol);
+        return ResponseEntity.ok(spreadsheetService.getCells(id, (cellRange != null) ? cellRange : CellRange.all(),
+            afterRow, afterCol, limit, principal.getName()));
+    }
+
+    /**
+     * Streams the cells of the sheet, or of a range given like for /cells, as CSV (TSV with delimiter=tab).
+     * The first line is the first row of the range; lines go on to the last row holding a cell
+     * and are padded with empty fields up to the last column holding a cell.
+     */
+    @GetMapping("/{id}/csv")
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = ",") String delimiter,
+            @RequestParam(required = false) String range,
+            @RequestParam(required = false) Integer startRow,
+            @RequestParam(required = false) Integer endRow,
+            @RequestParam(required = false) Integer startCol,
+            @RequestParam(required = false) Integer endCol,
+            Principal principal) {
+        char separator = delimiter(delimiter);
+        CellRange given = cellRange(range, startRow, endRow, startCol, endCol);
+        CellRange cellRange = (given != null) ? given : CellRange.all();
+
+        // Checked before the response starts, so that errors still get their status
+        SheetDTO header = spreadsheetService.getSheetHeader(id, principal.getName());
+        int maxColumn = (header.getMaxColumn() != null) ? header.getMaxColumn() : spreadsheetService.findMaxColumn(id);
+        int lastColumn = Math.max(Math.min(cellRange.getEndColumn(), maxColumn), cellRange.getStartColumn());
+
+        StreamingResponseBody body = out -> new CsvEncoder(out, separator, cellRange.getStartRow(), cellRange.getStartColumn(), lastColumn)
+            .encode(visitor -> spreadsheetService.streamCells(id, cellRange, visitor));
+        boolean tsv = separator == '\t';
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.valueOf(tsv ? "text/tab-separated-values;charset=UTF-8" : "text/csv;charset=UTF-8"));
+        headers.setContentDispositionFormData("attachment",
+            header.getName().replaceAll("[^a-zA-Z0-9.-]", "_") + (tsv ? ".tsv" : ".csv"));
+        return ResponseEntity.ok()
+            .headers(headers)
+            .body(body);
+    }
+
+    /**
+     * Replaces the cells of the sheet by the CSV (TSV with delimiter=tab) sent as request body, read as it arrives.
+     * With a range, only the cells of the range are replaced and the CSV, placed at its top left corner, must fit in it.
+     */
+    @PutMapping("/{id}/csv")
+    public ResponseEntity<MessageResponse> importCsv(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = ",") String delimiter,
+            @RequestParam(required = false) String range,
+            @RequestParam(required = false) Integer startRow,
+            @RequestParam(required = false) Integer endRow,
+            @RequestParam(required = false) Integer startCol,
+            @RequestParam(required = false) Integer endCol,
+            InputStream body,
+            Principal principal) throws IOException {
+        char separator = delimiter(delimiter);
+        CellRange cellRange = cellRange(range, startRow, endRow, startCol, endCol);
+        int rows = spreadsheetService.importCsv(id, body, separator, cellRange, principal.getName());
+        return ResponseEntity.ok(new MessageResponse(rows + " row(s) imported"));
+    }
+
     @PutMapping("/{id}/cells")
     public ResponseEntity<MessageResponse> updateCells(
             @PathVariable Long id,
@@ -72,6 +206,16 @@ public class SheetController {
         return ResponseEntity.ok(new MessageResponse("Row appended at index " + newRowIndex));
     }
 
+    @PostMapping("/{id}/rows/{rowIndex}")
+    public ResponseEntity<MessageResponse> insertRow(
+            @PathVariable Long id,
+            @PathVariable Integer rowIndex,
+            @Valid @RequestBody RowUpdateRequest request,
+            Principal principal) {
+        spreadsheetService.insertRow(id, rowIndex, request.getValues(), principal.getName());
+        return ResponseEntity.ok(new MessageResponse("Row inserted successfully"));
+    }
+
     @DeleteMapping("/{id}/rows")
     public ResponseEntity<MessageResponse> deleteRows(
             @PathVariable Long id,
@@ -120,6 +264,14 @@ public class SheetController {
         return ResponseEntity.ok(new MessageResponse("Column deleted successfully"));
     }
 
+    @GetMapping("/{id}/columns/{columnIndex}/stats")
+    public ResponseEntity<ColumnStatsDTO> getColumnStats(
+            @PathVariable Long id,
+            @PathVariable Integer columnIndex,
+            Principal principal) {
+        return ResponseEntity.ok(spreadsheetService.getColumnStats(id, columnIndex, principal.getName()));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteSheet(
             @PathVariable Long id,
@@ -128,4 +280,42 @@ public class SheetController {
         return ResponseEntity.noContent().build();
     }
 
-}
\ No newline at end of file
+    /**
+     * Range given in A1 notation or by 0-based bounds, null when neither is given
+     */
+    private static CellRange cellRange(String range, Integer startRow, Integer endRow, Integer startCol, Integer endCol) {
+        if (range != null) {
+            return CellRange.parse(range);
+        }
+        if (startRow == null && endRow == null && startCol == null && endCol == null) {
+            return null;
+        }
+        return new CellRange(
+            (startRow != null) ? startRow : 0,
+            (endRow != null) ? endRow : Integer.MAX_VALUE - 1,
+            (startCol != null) ? startCol : 0,
+            (endCol != null) ? endCol : Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * CSV delimiter: one character, or "tab"
+     */
+    private static char delimiter(String delimiter) {
+        if ("tab".equalsIgnoreCase(delimiter)) {
+            return '\t';
+        }
+        if (delimiter.length() != 1 || "\"\r\n".indexOf(delimiter.charAt(0)) >= 0) {
+            throw new IllegalArgumentException("delimiter must be one character other than a quote or a line break, or tab");
+        }
+        return delimiter.charAt(0);
+    }
+
+    /**
+     * Entity tag of a sheet representation: its version, followed by the format when it is not the default one
+     */
+    private static String eTag(SheetDTO header, MediaType mediaType) {
+        String format = (mediaType != null) ? "-" + mediaType.getSubtype().replaceAll("[^a-z]+", ".") : "";
+        return "\"" + header.getVersion() + format + "\"";
+    }
+
+}
@@ -6,14 +6,18 @@ import com.osivia.spreadsheet.api.dto.MessageResponse;
 import com.osivia.spreadsheet.api.dto.PermissionRequest;
 import com.osivia.spreadsheet.api.dto.SpreadsheetDTO;
 import com.osivia.spreadsheet.api.entity.Spreadsheet;
+import com.osivia.spreadsheet.api.service.SpreadsheetExcelWriter;
 import com.osivia.spreadsheet.api.service.SpreadsheetService;
 import com.osivia.spreadsheet.api.service.ZipExportImportService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.io.IOException;
@@ -30,9 +34,11 @@ import java.util.Objects;
 public class SpreadsheetController {
 
 
-    public SpreadsheetController(SpreadsheetService spreadsheetService, ZipExportImportService zipService) {
+    public SpreadsheetController(SpreadsheetService spreadsheetService, ZipExportImportService zipService,
+                                 SpreadsheetExcelWriter excelWriter) {
         this.spreadsheetService = spreadsheetService;
         this.zipService = zipService;
+        this.excelWriter = excelWriter;
     }
 
 
@@ -41,6 +47,8 @@ public class SpreadsheetController {
 
     private final ZipExportImportService zipService;
 
+    private final SpreadsheetExcelWriter excelWriter;
+
     @PostMapping
     public ResponseEntity<SpreadsheetDTO> createSpreadsheet(
             @Valid @RequestBody CreateSpreadsheetRequest request,
@@ -53,12 +61,24 @@ public class SpreadsheetController {
         return new ResponseEntity<>(spreadsheet, HttpStatus.CREATED);
     }
     
+    /**
+     * The spreadsheet version, which also moves with every change of its sheets, is sent as ETag;
+     * a matching If-None-Match gets a 304
+     */
     @GetMapping("/{id}")
     public ResponseEntity<SpreadsheetDTO> getSpreadsheet(
             @PathVariable Long id,
+            WebRequest request,
             Principal principal) {
         SpreadsheetDTO spreadsheet = spreadsheetService.getSpreadsheet(id, principal.getName());
-        return ResponseEntity.ok(spreadsheet);
+        String eTag = "\"" + spreadsheet.getVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(spreadsheet);
     }
     
     @GetMapping
@@ -99,44 +119,42 @@ public class SpreadsheetController {
     }
     
     @GetMapping("/{id}/export")
-    public ResponseEntity<byte[]> exportToExcel(
+    public ResponseEntity<StreamingResponseBody> exportToExcel(
             @PathVariable Long id,
-            Principal principal) throws IOException {
-        byte[] excelData = spreadsheetService.exportToExcel(id, principal.getName());
+            Principal principal) {
+        // Checked before the response starts, so errors keep their status
+        SpreadsheetDTO spreadsheet = spreadsheetService.getSpreadsheet(id, principal.getName());
         
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         headers.setContentDispositionFormData("attachment", "spreadsheet_" + id + ".xlsx");
         
+        StreamingResponseBody body = out -> excelWriter.write(spreadsheet, out);
         return ResponseEntity.ok()
             .headers(headers)
-            .body(excelData);
+            .body(body);
     }
 
 
     @GetMapping("/{id}/export/zip")
-    public ResponseEntity<byte[]> exportToZip(@PathVariable Long id, Principal principal) {
+    public ResponseEntity<StreamingResponseBody> exportToZip(@PathVariable Long id, Principal principal) {
+        // Récupérer le spreadsheet pour obtenir son nom (et vérifier l'accès avant d'écrire la réponse)
+        SpreadsheetDTO spreadsheet;
         try {
-            // Récupérer le spreadsheet pour obtenir son nom
-            SpreadsheetDTO spreadsheet = spreadsheetService.getSpreadsheet(id, principal.getName());
-
-            // Générer le ZIP
-            byte[] zipContent = zipService.exportSpreadsheetToZip(id);
-
-            // Préparer la réponse avec le bon nom de fichier
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment",
-                    spreadsheet.getName().replaceAll("[^a-zA-Z0-9.-]", "_") + ".zip");
-            headers.setContentLength(zipContent.length);
-
-            return new ResponseEntity<>(zipContent, headers, HttpStatus.OK);
-
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            spreadsheet = spreadsheetService.getSpreadsheet(id, principal.getName());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+
+        // Préparer la réponse avec le bon nom de fichier
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment",
+                spreadsheet.getName().replaceAll("[^a-zA-Z0-9.-]", "_") + ".zip");
+
+        // Générer le ZIP directement dans la réponse
+        StreamingResponseBody body = out -> zipService.exportSpreadsheetToZip(id, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
 
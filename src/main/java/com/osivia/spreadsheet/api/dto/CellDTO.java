@@ -1,9 +1,13 @@
 package com.osivia.spreadsheet.api.dto;
 
+import com.osivia.spreadsheet.api.entity.CellValueType;
+
 public class CellDTO {
     private Integer row;
     private Integer col;
     private String value;
+    // Optional on updates, inferred from the value when missing
+    private CellValueType type;
     
     public CellDTO() {}
     
@@ -13,6 +17,11 @@ public class CellDTO {
         this.value = value;
     }
     
+    public CellDTO(Integer row, Integer col, String value, CellValueType type) {
+        this(row, col, value);
+        this.type = type;
+    }
+    
     public Integer getRow() { return row; }
     public void setRow(Integer row) { this.row = row; }
     
@@ -21,4 +30,7 @@ public class CellDTO {
     
     public String getValue() { return value; }
     public void setValue(String value) { this.value = value; }
+    
+    public CellValueType getType() { return type; }
+    public void setType(CellValueType type) { this.type = type; }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.osivia.spreadsheet.api.dto;
+
+import java.util.List;
+
+public class CellPageDTO {
+    private List<CellDTO> cells;
+    private boolean hasMore;
+    // Keyset of the next page: pass them back as afterRow and afterCol
+    private Integer nextAfterRow;
+    private Integer nextAfterCol;
+    
+    public List<CellDTO> getCells() { return cells; }
+    public void setCells(List<CellDTO> cells) { this.cells = cells; }
+    
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+    
+    public Integer getNextAfterRow() { return nextAfterRow; }
+    public void setNextAfterRow(Integer nextAfterRow) { this.nextAfterRow = nextAfterRow; }
+    
+    public Integer getNextAfterCol() { return nextAfterCol; }
+    public void setNextAfterCol(Integer nextAfterCol) { this.nextAfterCol = nextAfterCol; }
+}
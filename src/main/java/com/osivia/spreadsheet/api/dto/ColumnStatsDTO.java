@@ -0,0 +1,42 @@
+package com.osivia.spreadsheet.api.dto;
+
+public class ColumnStatsDTO {
+    private Integer column;
+    private Long count;
+    private Long numericCount;
+    private Double sum;
+    private Double min;
+    private Double max;
+    
+    public ColumnStatsDTO() {}
+    
+    public ColumnStatsDTO(Long count, Long numericCount, Double sum, Double min, Double max) {
+        this.count = count;
+        this.numericCount = numericCount;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+    
+    public Integer getColumn() { return column; }
+    public void setColumn(Integer column) { this.column = column; }
+    
+    public Long getCount() { return count; }
+    public void setCount(Long count) { this.count = count; }
+    
+    public Long getNumericCount() { return numericCount; }
+    public void setNumericCount(Long numericCount) { this.numericCount = numericCount; }
+    
+    public Double getSum() { return sum; }
+    public void setSum(Double sum) { this.sum = sum; }
+    
+    public Double getMin() { return min; }
+    public void setMin(Double min) { this.min = min; }
+    
+    public Double getMax() { return max; }
+    public void setMax(Double max) { this.max = max; }
+    
+    public Double getAverage() {
+        return (numericCount != null && numericCount > 0 && sum != null) ? sum / numericCount : null;
+    }
+}
@@ -1,11 +1,19 @@
 package com.osivia.spreadsheet.api.dto;
 
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+
 import javax.validation.constraints.NotBlank;
 
 public class CreateSheetRequest {
     @NotBlank(message = "Name is required")
     private String name;
     
+    // Optional, the configured default mode is used when missing
+    private CellStorageMode storageMode;
+    
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
+    
+    public CellStorageMode getStorageMode() { return storageMode; }
+    public void setStorageMode(CellStorageMode storageMode) { this.storageMode = storageMode; }
 }
\ No newline at end of file
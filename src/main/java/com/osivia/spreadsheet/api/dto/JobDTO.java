@@ -0,0 +1,52 @@
+package com.osivia.spreadsheet.api.dto;
+
+import java.time.LocalDateTime;
+
+public class JobDTO {
+    private String id;
+    private String type;
+    private String status;
+    private Long spreadsheetId;
+    private String filename;
+    private Long rowsProcessed;
+    private Long bytesProcessed;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public JobDTO() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getSpreadsheetId() { return spreadsheetId; }
+    public void setSpreadsheetId(Long spreadsheetId) { this.spreadsheetId = spreadsheetId; }
+
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+
+    public Long getRowsProcessed() { return rowsProcessed; }
+    public void setRowsProcessed(Long rowsProcessed) { this.rowsProcessed = rowsProcessed; }
+
+    public Long getBytesProcessed() { return bytesProcessed; }
+    public void setBytesProcessed(Long bytesProcessed) { this.bytesProcessed = bytesProcessed; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
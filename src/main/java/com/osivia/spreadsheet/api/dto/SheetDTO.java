@@ -1,5 +1,7 @@
 package com.osivia.spreadsheet.api.dto;
 
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -10,7 +12,13 @@ public class SheetDTO {
     private Integer orderIndex;
     private Integer rowCount;
     private Integer columnCount;
+    private Integer maxRow;
+    private Integer maxColumn;
+    private Long cellCount;
+    private Long byteSize;
+    private CellStorageMode storageMode;
     private List<CellDTO> cells;
+    private Long version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -32,9 +40,27 @@ public class SheetDTO {
     public Integer getColumnCount() { return columnCount; }
     public void setColumnCount(Integer columnCount) { this.columnCount = columnCount; }
     
+    public Integer getMaxRow() { return maxRow; }
+    public void setMaxRow(Integer maxRow) { this.maxRow = maxRow; }
+    
+    public Integer getMaxColumn() { return maxColumn; }
+    public void setMaxColumn(Integer maxColumn) { this.maxColumn = maxColumn; }
+    
+    public Long getCellCount() { return cellCount; }
+    public void setCellCount(Long cellCount) { this.cellCount = cellCount; }
+    
+    public Long getByteSize() { return byteSize; }
+    public void setByteSize(Long byteSize) { this.byteSize = byteSize; }
+    
+    public CellStorageMode getStorageMode() { return storageMode; }
+    public void setStorageMode(CellStorageMode storageMode) { this.storageMode = storageMode; }
+    
     public List<CellDTO> getCells() { return cells; }
     public void setCells(List<CellDTO> cells) { this.cells = cells; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -4,6 +4,10 @@ public class SheetSummaryDTO {
     private Long id;
     private String name;
     private Integer orderIndex;
+    private Integer maxRow;
+    private Integer maxColumn;
+    private Long cellCount;
+    private Long byteSize;
     
     public SheetSummaryDTO() {}
     
@@ -13,6 +17,14 @@ public class SheetSummaryDTO {
         this.orderIndex = orderIndex;
     }
     
+    public SheetSummaryDTO(Long id, String name, Integer orderIndex, Integer maxRow, Integer maxColumn, Long cellCount, Long byteSize) {
+        this(id, name, orderIndex);
+        this.maxRow = maxRow;
+        this.maxColumn = maxColumn;
+        this.cellCount = cellCount;
+        this.byteSize = byteSize;
+    }
+    
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
@@ -21,4 +33,16 @@ public class SheetSummaryDTO {
     
     public Integer getOrderIndex() { return orderIndex; }
     public void setOrderIndex(Integer orderIndex) { this.orderIndex = orderIndex; }
+    
+    public Integer getMaxRow() { return maxRow; }
+    public void setMaxRow(Integer maxRow) { this.maxRow = maxRow; }
+    
+    public Integer getMaxColumn() { return maxColumn; }
+    public void setMaxColumn(Integer maxColumn) { this.maxColumn = maxColumn; }
+    
+    public Long getCellCount() { return cellCount; }
+    public void setCellCount(Long cellCount) { this.cellCount = cellCount; }
+    
+    public Long getByteSize() { return byteSize; }
+    public void setByteSize(Long byteSize) { this.byteSize = byteSize; }
 }
\ No newline at end of file
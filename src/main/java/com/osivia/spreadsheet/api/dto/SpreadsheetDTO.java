@@ -10,6 +10,7 @@ public class SpreadsheetDTO {
     private String ownerUsername;
     private List<SheetSummaryDTO> sheets;
     private Integer mediaCount;
+    private Long version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String userPermission;
@@ -32,6 +33,9 @@ public class SpreadsheetDTO {
     public Integer getMediaCount() { return mediaCount; }
     public void setMediaCount(Integer mediaCount) { this.mediaCount = mediaCount; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -1,10 +1,13 @@
 package com.osivia.spreadsheet.api.entity;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "cells", indexes = {
-    @Index(name = "idx_sheet_row_col", columnList = "sheet_id, row_index, column_index")
+    @Index(name = "idx_sheet_row_col", columnList = "sheet_id, row_index, column_index", unique = true),
+    @Index(name = "idx_sheet_col_number", columnList = "sheet_id, column_index, numeric_value"),
+    @Index(name = "idx_sheet_col_date", columnList = "sheet_id, column_index, date_value")
 })
 public class Cell {
     @Id
@@ -15,6 +18,7 @@ public class Cell {
     @JoinColumn(name = "sheet_id", nullable = false)
     private Sheet sheet;
     
+    // Stable row id, its position in the sheet is given by the sheet's RowMap
     @Column(name = "row_index", nullable = false)
     private Integer rowIndex;
     
@@ -24,6 +28,20 @@ public class Cell {
     @Column(name = "cell_value", columnDefinition = "TEXT")
     private String value;
     
+    // Typed copy of the value, only the column matching the type is filled
+    @Enumerated(EnumType.STRING)
+    @Column(name = "value_type", length = 16)
+    private CellValueType valueType;
+    
+    @Column(name = "numeric_value")
+    private Double numericValue;
+    
+    @Column(name = "boolean_value")
+    private Boolean booleanValue;
+    
+    @Column(name = "date_value")
+    private LocalDateTime dateValue;
+    
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
@@ -38,4 +56,28 @@ public class Cell {
     
     public String getValue() { return value; }
     public void setValue(String value) { this.value = value; }
+    
+    // Cells written before value types existed are typed from their text
+    public CellValueType getValueType() { return valueType != null ? valueType : CellValues.infer(value); }
+    public void setValueType(CellValueType valueType) { this.valueType = valueType; }
+    
+    public Double getNumericValue() { return numericValue; }
+    public void setNumericValue(Double numericValue) { this.numericValue = numericValue; }
+    
+    public Boolean getBooleanValue() { return booleanValue; }
+    public void setBooleanValue(Boolean booleanValue) { this.booleanValue = booleanValue; }
+    
+    public LocalDateTime getDateValue() { return dateValue; }
+    public void setDateValue(LocalDateTime dateValue) { this.dateValue = dateValue; }
+    
+    /**
+     * Sets the text of the cell and fills the typed column matching its type
+     */
+    public void setTypedValue(String value, CellValueType type) {
+        this.value = value;
+        this.valueType = type;
+        this.numericValue = CellValues.numericValue(value, type);
+        this.booleanValue = CellValues.booleanValue(value, type);
+        this.dateValue = CellValues.dateValue(value, type);
+    }
 }
\ No newline at end of file
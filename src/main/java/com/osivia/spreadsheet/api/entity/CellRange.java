@@ -0,0 +1,85 @@
+package com.osivia.spreadsheet.api.entity;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rectangle of cells given by inclusive 0-based row and column bounds
+ */
+public class CellRange {
+
+    private static final Pattern A1 = Pattern.compile("([A-Za-z]{1,3})([1-9][0-9]{0,8})");
+
+    private final int startRow;
+
+    private final int endRow;
+
+    private final int startColumn;
+
+    private final int endColumn;
+
+    public CellRange(int startRow, int endRow, int startColumn, int endColumn) {
+        if (startRow < 0 || startColumn < 0 || endRow < startRow || endColumn < startColumn) {
+            throw new IllegalArgumentException("Invalid range: rows " + startRow + ".." + endRow
+                + ", columns " + startColumn + ".." + endColumn);
+        }
+        this.startRow = startRow;
+        this.endRow = endRow;
+        this.startColumn = startColumn;
+        this.endColumn = endColumn;
+    }
+
+    /**
+     * Whole sheet
+     */
+    public static CellRange all() {
+        return new CellRange(0, Integer.MAX_VALUE - 1, 0, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Reads an A1 reference, either one cell ("B2") or a rectangle ("A1:AD60")
+     */
+    public static CellRange parse(String reference) {
+        String[] corners = reference.trim().split(":", -1);
+        if (corners.length > 2) {
+            throw new IllegalArgumentException("Invalid range: " + reference);
+        }
+
+        int[] first = parseCell(corners[0], reference);
+        int[] last = (corners.length == 2) ? parseCell(corners[1], reference) : first;
+        return new CellRange(Math.min(first[0], last[0]), Math.max(first[0], last[0]),
+            Math.min(first[1], last[1]), Math.max(first[1], last[1]));
+    }
+
+    /**
+     * Column letters of a 0-based column index: 0 is A, 26 is AA
+     */
+    public static String columnName(int column) {
+        StringBuilder name = new StringBuilder();
+        for (int c = column + 1; c > 0; c = (c - 1) / 26) {
+            name.insert(0, (char) ('A' + (c - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    private static int[] parseCell(String cell, String reference) {
+        Matcher matcher = A1.matcher(cell);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid range: " + reference);
+        }
+
+        int column = 0;
+        for (char c : matcher.group(1).toUpperCase().toCharArray()) {
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return new int[]{Integer.parseInt(matcher.group(2)) - 1, column - 1};
+    }
+
+    public int getStartRow() { return startRow; }
+
+    public int getEndRow() { return endRow; }
+
+    public int getStartColumn() { return startColumn; }
+
+    public int getEndColumn() { return endColumn; }
+}
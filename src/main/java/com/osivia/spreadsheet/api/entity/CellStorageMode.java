@@ -0,0 +1,6 @@
+package com.osivia.spreadsheet.api.entity;
+
+public enum CellStorageMode {
+    CELLS,
+    TILES
+}
@@ -0,0 +1,51 @@
+package com.osivia.spreadsheet.api.entity;
+
+import javax.persistence.*;
+
+/**
+ * Block of cells of a sheet stored in TILES mode, compressed into one binary value.
+ * tileRow and tileColumn are the row id and column divided by the tile size.
+ */
+@Entity
+@Table(name = "cell_tiles", indexes = {
+    @Index(name = "idx_sheet_tile", columnList = "sheet_id, tile_row, tile_col", unique = true)
+})
+public class CellTile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sheet_id", nullable = false)
+    private Sheet sheet;
+    
+    @Column(name = "tile_row", nullable = false)
+    private Integer tileRow;
+    
+    @Column(name = "tile_col", nullable = false)
+    private Integer tileColumn;
+    
+    @Column(name = "cell_count", nullable = false)
+    private Integer cellCount;
+    
+    @Column(name = "tile_data", nullable = false, length = 16777216)
+    private byte[] data;
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Sheet getSheet() { return sheet; }
+    public void setSheet(Sheet sheet) { this.sheet = sheet; }
+    
+    public Integer getTileRow() { return tileRow; }
+    public void setTileRow(Integer tileRow) { this.tileRow = tileRow; }
+    
+    public Integer getTileColumn() { return tileColumn; }
+    public void setTileColumn(Integer tileColumn) { this.tileColumn = tileColumn; }
+    
+    public Integer getCellCount() { return cellCount; }
+    public void setCellCount(Integer cellCount) { this.cellCount = cellCount; }
+    
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+}
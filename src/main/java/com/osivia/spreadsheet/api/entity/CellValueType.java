@@ -0,0 +1,8 @@
+package com.osivia.spreadsheet.api.entity;
+
+public enum CellValueType {
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    DATE
+}
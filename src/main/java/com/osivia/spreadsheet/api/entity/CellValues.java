@@ -0,0 +1,79 @@
+package com.osivia.spreadsheet.api.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+
+/**
+ * Conversions between the text of a cell and its typed value.
+ *
+ * The text stays the value shown to clients; the typed value is derived from it
+ * and stored next to it so that sorting and aggregation need no parsing.
+ */
+public final class CellValues {
+
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}(T\\d{2}:\\d{2}(:\\d{2}(\\.\\d{1,9})?)?)?");
+
+    private CellValues() {
+    }
+
+    /**
+     * Guesses the type of a text entered without an explicit type
+     */
+    public static CellValueType infer(String text) {
+        if (text == null || text.isEmpty()) {
+            return CellValueType.STRING;
+        }
+        if ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text)) {
+            return CellValueType.BOOLEAN;
+        }
+        if (NUMBER.matcher(text).matches() && Double.isFinite(Double.parseDouble(text))) {
+            return CellValueType.NUMBER;
+        }
+        if (DATE.matcher(text).matches() && parseDate(text) != null) {
+            return CellValueType.DATE;
+        }
+        return CellValueType.STRING;
+    }
+
+    /**
+     * Checks that a text can be read as the given type
+     * @throws IllegalArgumentException if it cannot
+     */
+    public static void check(String text, CellValueType type) {
+        if (type != CellValueType.STRING && infer(text) != type) {
+            throw new IllegalArgumentException("Value '" + text + "' is not a valid " + type);
+        }
+    }
+
+    public static Double numericValue(String text, CellValueType type) {
+        return (type == CellValueType.NUMBER) ? Double.valueOf(text) : null;
+    }
+
+    public static Boolean booleanValue(String text, CellValueType type) {
+        return (type == CellValueType.BOOLEAN) ? Boolean.valueOf(text.toLowerCase()) : null;
+    }
+
+    public static LocalDateTime dateValue(String text, CellValueType type) {
+        return (type == CellValueType.DATE) ? parseDate(text) : null;
+    }
+
+    /**
+     * ISO text of a date, without the time when it is midnight
+     */
+    public static String formatDate(LocalDateTime date) {
+        return date.toLocalTime().equals(LocalTime.MIDNIGHT) ? date.toLocalDate().toString() : date.toString();
+    }
+
+    private static LocalDateTime parseDate(String text) {
+        try {
+            return (text.length() == 10) ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.osivia.spreadsheet.api.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Order of the rows of a sheet.
+ *
+ * Cells store a stable row id in row_index. The row map lists the rows as segments
+ * of consecutive row ids (a piece table), so inserting or deleting rows in the middle
+ * of a sheet only edits this list and never touches the cells of the other rows.
+ * A sheet that never had a structural edit keeps the identity map, where the row id
+ * is the position, and stores nothing.
+ */
+public class RowMap {
+
+    /**
+     * Receives consecutive positions backed by consecutive row ids
+     */
+    public interface SegmentVisitor {
+        void visit(int position, int firstRowId, int length);
+    }
+
+    private boolean identity;
+
+    private int[] starts = new int[4];
+
+    private int[] lengths = new int[4];
+
+    private int[] offsets = new int[4];
+
+    private int count;
+
+    private int size;
+
+    private int nextRowId;
+
+    private RowMap() {
+    }
+
+    public static RowMap identity() {
+        RowMap map = new RowMap();
+        map.identity = true;
+        return map;
+    }
+
+    /**
+     * Reads a map written by {@link #encode()}: "nextRowId|start:length,start:length"
+     */
+    public static RowMap decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return identity();
+        }
+
+        RowMap map = new RowMap();
+        int bar = encoded.indexOf('|');
+        map.nextRowId = Integer.parseInt(encoded.substring(0, bar));
+        if (bar + 1 < encoded.length()) {
+            for (String segment : encoded.substring(bar + 1).split(",")) {
+                int colon = segment.indexOf(':');
+                map.append(Integer.parseInt(segment.substring(0, colon)), Integer.parseInt(segment.substring(colon + 1)));
+            }
+        }
+        map.reindex();
+        return map;
+    }
+
+    /**
+     * Compact form stored on the sheet, null for the identity map
+     */
+    public String encode() {
+        if (identity) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder(count * 12 + 12);
+        sb.append(nextRowId).append('|');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(starts[i]).append(':').append(lengths[i]);
+        }
+        return sb.toString();
+    }
+
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * Turns the identity map into explicit segments before a structural edit.
+     * @param rowCount number of rows holding data (highest row id + 1)
+     */
+    public void materialize(int rowCount) {
+        if (!identity) {
+            return;
+        }
+
+        identity = false;
+        count = 0;
+        if (rowCount > 0) {
+            append(0, rowCount);
+        }
+        nextRowId = rowCount;
+        reindex();
+    }
+
+    /**
+     * Number of positions covered by the segments; positions past it are empty rows
+     */
+    public int size() {
+        return identity ? Integer.MAX_VALUE : size;
+    }
+
+    /**
+     * Row id stored at a position, or -1 if no row was ever allocated there
+     */
+    public int rowIdAt(int position) {
+        if (identity) {
+            return position;
+        }
+        if (position < 0 || position >= size) {
+            return -1;
+        }
+
+        int i = segmentAt(position);
+        return starts[i] + (position - offsets[i]);
+    }
+
+    /**
+     * Row id stored at a position, allocating new row ids up to it when needed
+     */
+    public int rowIdFor(int position) {
+        if (!identity && position >= size) {
+            extend(position - size + 1);
+        }
+        return rowIdAt(position);
+    }
+
+    /**
+     * Inserts empty rows before a position. Inserting past the last row changes nothing.
+     */
+    public void insert(int position, int rows) {
+        requireExplicit();
+        if (position >= size || rows <= 0) {
+            return;
+        }
+
+        int i = segmentAt(position);
+        int split = position - offsets[i];
+        if (split > 0) {
+            insertSegment(i + 1, starts[i] + split, lengths[i] - split);
+            lengths[i] = split;
+            i++;
+        }
+        insertSegment(i, nextRowId, rows);
+        nextRowId += rows;
+        reindex();
+    }
+
+    /**
+     * Removes rows starting at a position.
+     * @return the removed row ids as inclusive [first, last] ranges, for deleting their cells
+     */
+    public List<int[]> remove(int position, int rows) {
+        requireExplicit();
+        List<int[]> removed = new ArrayList<>();
+        int end = (int) Math.min((long) position + rows, size);
+        if (position >= end) {
+            return removed;
+        }
+
+        int[] oldStarts = Arrays.copyOf(starts, count);
+        int[] oldLengths = Arrays.copyOf(lengths, count);
+        int oldCount = count;
+        count = 0;
+
+        int segmentPosition = 0;
+        for (int i = 0; i < oldCount; i++) {
+            int segmentEnd = segmentPosition + oldLengths[i];
+
+            if (segmentEnd <= position || segmentPosition >= end) {
+                append(oldStarts[i], oldLengths[i]);
+            } else {
+                int from = Math.max(segmentPosition, position);
+                int to = Math.min(segmentEnd, end);
+                if (segmentPosition < from) {
+                    append(oldStarts[i], from - segmentPosition);
+                }
+                removed.add(new int[]{oldStarts[i] + (from - segmentPosition), oldStarts[i] + (to - segmentPosition) - 1});
+                if (to < segmentEnd) {
+                    append(oldStarts[i] + (to - segmentPosition), segmentEnd - to);
+                }
+            }
+            segmentPosition = segmentEnd;
+        }
+
+        reindex();
+        return removed;
+    }
+
+    /**
+     * Visits, in position order, the segments overlapping the positions [from, to]
+     */
+    public void forEachSegment(int from, int to, SegmentVisitor visitor) {
+        if (identity) {
+            if (from <= to) {
+                visitor.visit(from, from, to - from + 1);
+            }
+            return;
+        }
+
+        int last = Math.min(to, size - 1);
+        if (from > last) {
+            return;
+        }
+
+        for (int i = segmentAt(Math.max(from, 0)); i < count && offsets[i] <= last; i++) {
+            int first = Math.max(from, offsets[i]);
+            int end = Math.min(last, offsets[i] + lengths[i] - 1);
+            visitor.visit(first, starts[i] + (first - offsets[i]), end - first + 1);
+        }
+    }
+
+    /**
+     * Visits the segments from the last position to the first
+     */
+    public void forEachSegmentReversed(SegmentVisitor visitor) {
+        requireExplicit();
+        for (int i = count - 1; i >= 0; i--) {
+            visitor.visit(offsets[i], starts[i], lengths[i]);
+        }
+    }
+
+    private void extend(int rows) {
+        if (count > 0 && starts[count - 1] + lengths[count - 1] == nextRowId) {
+            lengths[count - 1] += rows;
+        } else {
+            append(nextRowId, rows);
+        }
+        nextRowId += rows;
+        reindex();
+    }
+
+    private void requireExplicit() {
+        if (identity) {
+            throw new IllegalStateException("Row map must be materialized first");
+        }
+    }
+
+    private int segmentAt(int position) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void append(int start, int length) {
+        if (count > 0 && starts[count - 1] + lengths[count - 1] == start) {
+            lengths[count - 1] += length;
+            return;
+        }
+        ensureCapacity(count + 1);
+        starts[count] = start;
+        lengths[count] = length;
+        count++;
+    }
+
+    private void insertSegment(int index, int start, int length) {
+        ensureCapacity(count + 1);
+        System.arraycopy(starts, index, starts, index + 1, count - index);
+        System.arraycopy(lengths, index, lengths, index + 1, count - index);
+        starts[index] = start;
+        lengths[index] = length;
+        count++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newCapacity = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+            offsets = Arrays.copyOf(offsets, newCapacity);
+        }
+    }
+
+    private void reindex() {
+        if (offsets.length < starts.length) {
+            offsets = Arrays.copyOf(offsets, starts.length);
+        }
+        // Merge neighbours whose row ids follow each other
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            if (merged > 0 && starts[merged - 1] + lengths[merged - 1] == starts[i]) {
+                lengths[merged - 1] += lengths[i];
+            } else {
+                starts[merged] = starts[i];
+                lengths[merged] = lengths[i];
+                merged++;
+            }
+        }
+        count = merged;
+
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = position;
+            position += lengths[i];
+        }
+        size = position;
+    }
+}
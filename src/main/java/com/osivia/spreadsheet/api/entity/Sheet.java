@@ -25,12 +25,42 @@ public class Sheet {
     @OneToMany(mappedBy = "sheet", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Cell> cells = new ArrayList<>();
     
+    @OneToMany(mappedBy = "sheet", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    private List<CellTile> tiles = new ArrayList<>();
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "storage_mode")
+    private CellStorageMode storageMode = CellStorageMode.CELLS;
+    
     @Column(name = "row_count")
     private Integer rowCount = 1000;
     
     @Column(name = "column_count")
     private Integer columnCount = 26;
     
+    // Extent and statistics of the cells, maintained by every change; null for sheets
+    // not changed since before they were, until their next change
+    @Column(name = "max_row")
+    private Integer maxRow = -1;
+    
+    @Column(name = "max_column")
+    private Integer maxColumn = -1;
+    
+    @Column(name = "cell_count")
+    private Long cellCount = 0L;
+    
+    // Approximate size of the values, see CellStats
+    @Column(name = "byte_size")
+    private Long byteSize = 0L;
+    
+    // Encoded RowMap, null while rows are still in row id order
+    @Column(name = "row_map", columnDefinition = "TEXT")
+    private String rowMap;
+    
+    // Moved forward by every change of the sheet with SheetRepository.incrementVersion, never written by Hibernate
+    @Column(name = "version", updatable = false)
+    private Long version = 0L;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -64,12 +94,40 @@ public class Sheet {
     public List<Cell> getCells() { return cells; }
     public void setCells(List<Cell> cells) { this.cells = cells; }
     
+    public List<CellTile> getTiles() { return tiles; }
+    public void setTiles(List<CellTile> tiles) { this.tiles = tiles; }
+    
+    // Sheets created before storage modes existed have no value and use CELLS
+    public CellStorageMode getStorageMode() { return storageMode != null ? storageMode : CellStorageMode.CELLS; }
+    public void setStorageMode(CellStorageMode storageMode) { this.storageMode = storageMode; }
+    
     public Integer getRowCount() { return rowCount; }
     public void setRowCount(Integer rowCount) { this.rowCount = rowCount; }
     
     public Integer getColumnCount() { return columnCount; }
     public void setColumnCount(Integer columnCount) { this.columnCount = columnCount; }
     
+    // Highest row position holding a cell, -1 when the sheet is empty
+    public Integer getMaxRow() { return maxRow; }
+    public void setMaxRow(Integer maxRow) { this.maxRow = maxRow; }
+    
+    // Highest column holding a cell, -1 when the sheet is empty
+    public Integer getMaxColumn() { return maxColumn; }
+    public void setMaxColumn(Integer maxColumn) { this.maxColumn = maxColumn; }
+    
+    public Long getCellCount() { return cellCount; }
+    public void setCellCount(Long cellCount) { this.cellCount = cellCount; }
+    
+    public Long getByteSize() { return byteSize; }
+    public void setByteSize(Long byteSize) { this.byteSize = byteSize; }
+    
+    public String getRowMap() { return rowMap; }
+    public void setRowMap(String rowMap) { this.rowMap = rowMap; }
+    
+    // Sheets created before versions existed have no value
+    public Long getVersion() { return version != null ? version : 0L; }
+    public void setVersion(Long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
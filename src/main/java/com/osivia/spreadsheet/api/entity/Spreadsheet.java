@@ -33,6 +33,10 @@ public class Spreadsheet {
     @OneToMany(mappedBy = "spreadsheet", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<SpreadsheetPermission> permissions = new HashSet<>();
     
+    // Moved forward by every change of the spreadsheet or of its sheets with SpreadsheetRepository.incrementVersion, never written by Hibernate
+    @Column(name = "version", updatable = false)
+    private Long version = 0L;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -74,6 +78,10 @@ public class Spreadsheet {
         this.permissions = permissions; 
     }
     
+    // Spreadsheets created before versions existed have no value
+    public Long getVersion() { return version != null ? version : 0L; }
+    public void setVersion(Long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
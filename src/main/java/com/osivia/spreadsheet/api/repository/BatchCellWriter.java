@@ -0,0 +1,97 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Buffers cells of one sheet and inserts them with JDBC batches,
+ * bypassing the per-entity IDENTITY inserts done by Hibernate.
+ * Not thread-safe: one writer per sheet and per transaction.
+ */
+public class BatchCellWriter implements CellWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO cells (sheet_id, row_index, column_index, " + CellValueColumns.NAMES + ") " +
+            "VALUES (?, ?, ?, " + CellValueColumns.PLACEHOLDERS + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Long sheetId;
+
+    private final int[] rows;
+
+    private final int[] columns;
+
+    private final String[] values;
+
+    private final CellValueType[] types;
+
+    private int size;
+
+    private long count;
+
+    public BatchCellWriter(JdbcTemplate jdbcTemplate, Long sheetId, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sheetId = sheetId;
+        this.rows = new int[batchSize];
+        this.columns = new int[batchSize];
+        this.values = new String[batchSize];
+        this.types = new CellValueType[batchSize];
+    }
+
+    @Override
+    public void add(int row, int column, String value, CellValueType type) {
+        rows[size] = row;
+        columns[size] = column;
+        values[size] = value;
+        types[size] = type;
+        size++;
+        count++;
+
+        if (size == values.length) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (size == 0) {
+            return;
+        }
+
+        final int batchCount = size;
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, sheetId);
+                ps.setInt(2, rows[i]);
+                ps.setInt(3, columns[i]);
+                CellValueColumns.bind(ps, 4, values[i], types[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batchCount;
+            }
+        });
+
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(types, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
@@ -1,55 +1,113 @@
 package com.osivia.spreadsheet.api.repository;
 
 
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
 import com.osivia.spreadsheet.api.entity.Cell;
 import com.osivia.spreadsheet.api.entity.Sheet;
+import com.osivia.spreadsheet.api.storage.CellStats;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import java.util.Optional;
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface CellRepository extends JpaRepository<Cell, Long> {
+public interface CellRepository extends JpaRepository<Cell, Long>, CellRepositoryCustom {
 
-    // EXISTING METHODS - Keep these unchanged
-    Optional<Cell> findBySheetAndRowIndexAndColumnIndex(Sheet sheet, Integer rowIndex, Integer columnIndex);
+    /**
+     * Find the cells of a rectangle (bounds inclusive) in row then column order, walking the
+     * (sheet, row, column) index; the page limits the number of cells read
+     */
+    @Query("SELECT c FROM Cell c WHERE c.sheet = :sheet AND c.rowIndex BETWEEN :startRow AND :endRow " +
+           "AND c.columnIndex BETWEEN :startCol AND :endCol ORDER BY c.rowIndex, c.columnIndex")
+    List<Cell> findInRange(@Param("sheet") Sheet sheet, @Param("startRow") Integer startRow, @Param("endRow") Integer endRow,
+                           @Param("startCol") Integer startCol, @Param("endCol") Integer endCol, Pageable pageable);
 
+    /**
+     * Same as findInRange, read through a cursor fetching a thousand cells at a time.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT c FROM Cell c WHERE c.sheet = :sheet AND c.rowIndex BETWEEN :startRow AND :endRow " +
+           "AND c.columnIndex BETWEEN :startCol AND :endCol ORDER BY c.rowIndex, c.columnIndex")
+    Stream<Cell> streamInRange(@Param("sheet") Sheet sheet, @Param("startRow") Integer startRow, @Param("endRow") Integer endRow,
+                               @Param("startCol") Integer startCol, @Param("endCol") Integer endCol);
 
-    @Query("SELECT c FROM Cell c WHERE c.sheet = :sheet ORDER BY c.rowIndex, c.columnIndex")
-    List<Cell> findBySheetOrdered(@Param("sheet") Sheet sheet);
+    /**
+     * Delete all cells of the rows between startRow and endRow (inclusive)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cell c WHERE c.sheet = :sheet AND c.rowIndex BETWEEN :startRow AND :endRow")
+    int deleteRows(@Param("sheet") Sheet sheet, @Param("startRow") Integer startRow, @Param("endRow") Integer endRow);
 
     /**
-     * Find all cells in a specific row
+     * Delete all cells of a column
      */
-    List<Cell> findBySheetAndRowIndex(Sheet sheet, Integer rowIndex);
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cell c WHERE c.sheet = :sheet AND c.columnIndex = :columnIndex")
+    int deleteColumn(@Param("sheet") Sheet sheet, @Param("columnIndex") Integer columnIndex);
 
     /**
-     * Find all cells in a specific column
+     * Move every cell at or right of fromColumn by delta columns.
+     * Done in two passes through negative indexes so that the unique
+     * (sheet, row, column) index never sees two cells at the same place.
+     * Cells are never written at a negative column, so the second pass
+     * only restores the cells moved aside by the first.
      */
-    List<Cell> findBySheetAndColumnIndex(Sheet sheet, Integer columnIndex);
+    default int shiftColumns(Sheet sheet, Integer fromColumn, Integer delta) {
+        int moved = moveColumnsAside(sheet, fromColumn, delta);
+        restoreMovedColumns(sheet);
+        return moved;
+    }
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Cell c SET c.columnIndex = -(c.columnIndex + :delta) - 1 WHERE c.sheet = :sheet AND c.columnIndex >= :fromColumn")
+    int moveColumnsAside(@Param("sheet") Sheet sheet, @Param("fromColumn") Integer fromColumn, @Param("delta") Integer delta);
+
+    @Modifying
+    @Query("UPDATE Cell c SET c.columnIndex = -c.columnIndex - 1 WHERE c.sheet = :sheet AND c.columnIndex < 0")
+    int restoreMovedColumns(@Param("sheet") Sheet sheet);
 
     /**
-     * Find all cells with row index greater than specified value
+     * Delete all cells of a sheet
      */
-    List<Cell> findBySheetAndRowIndexGreaterThan(Sheet sheet, Integer rowIndex);
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cell c WHERE c.sheet = :sheet")
+    int deleteBySheet(@Param("sheet") Sheet sheet);
 
     /**
-     * Find all cells with column index greater than specified value
+     * Count and aggregate the numeric values of a column, using the (sheet, column, number) index
      */
-    List<Cell> findBySheetAndColumnIndexGreaterThan(Sheet sheet, Integer columnIndex);
+    @Query("SELECT new com.osivia.spreadsheet.api.dto.ColumnStatsDTO(COUNT(c), COUNT(c.numericValue), " +
+           "SUM(c.numericValue), MIN(c.numericValue), MAX(c.numericValue)) " +
+           "FROM Cell c WHERE c.sheet = :sheet AND c.columnIndex = :columnIndex")
+    ColumnStatsDTO findColumnStats(@Param("sheet") Sheet sheet, @Param("columnIndex") Integer columnIndex);
 
     /**
-     * Find all cells with column index greater than or equal to specified value
+     * Find the maximum column index in a sheet, using the (sheet, column, number) index
      */
-    List<Cell> findBySheetAndColumnIndexGreaterThanEqual(Sheet sheet, Integer columnIndex);
+    @Query("SELECT MAX(c.columnIndex) FROM Cell c WHERE c.sheet = :sheet")
+    Integer findMaxColumnIndex(@Param("sheet") Sheet sheet);
 
     /**
-     * Find the maximum row index in a sheet
+     * Count, total value length and highest row and column of the cells of a rectangle (bounds inclusive)
      */
-    @Query("SELECT MAX(c.rowIndex) FROM Cell c WHERE c.sheet = :sheet")
-    Integer findMaxRowIndexBySheet(@Param("sheet") Sheet sheet);
+    @Query("SELECT new com.osivia.spreadsheet.api.storage.CellStats(COUNT(c), SUM(LENGTH(c.value)), " +
+           "MAX(c.rowIndex), MAX(c.columnIndex)) FROM Cell c WHERE c.sheet = :sheet " +
+           "AND c.rowIndex BETWEEN :startRow AND :endRow AND c.columnIndex BETWEEN :startCol AND :endCol")
+    CellStats measureRange(@Param("sheet") Sheet sheet, @Param("startRow") Integer startRow, @Param("endRow") Integer endRow,
+                           @Param("startCol") Integer startCol, @Param("endCol") Integer endCol);
 
-    List<Cell> findBySheet(Sheet sheet);
+    /**
+     * Find the maximum row index between startRow and endRow (inclusive)
+     */
+    @Query("SELECT MAX(c.rowIndex) FROM Cell c WHERE c.sheet = :sheet AND c.rowIndex BETWEEN :startRow AND :endRow")
+    Integer findMaxRowIndexInRange(@Param("sheet") Sheet sheet, @Param("startRow") Integer startRow, @Param("endRow") Integer endRow);
 }
@@ -0,0 +1,35 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.Cell;
+import com.osivia.spreadsheet.api.entity.Sheet;
+
+import java.util.Collection;
+
+/**
+ * Bulk cell operations implemented with plain JDBC
+ */
+public interface CellRepositoryCustom {
+
+    /**
+     * Opens a writer inserting new cells of the sheet with JDBC batches.
+     * Pending JPA changes are flushed first so the batches see them.
+     */
+    BatchCellWriter openBatchWriter(Sheet sheet);
+
+    /**
+     * Opens the fastest writer for loading many new cells into the sheet:
+     * COPY on PostgreSQL, JDBC batches elsewhere.
+     */
+    CellWriter openBulkWriter(Sheet sheet);
+
+    /**
+     * Inserts or replaces the values of the given cells in batches, relying on the
+     * unique (sheet, row, column) index. Coordinates must be distinct.
+     */
+    void upsertCells(Sheet sheet, Collection<Cell> cells);
+
+    /**
+     * Deletes the cells at the coordinates of the given cells in batches
+     */
+    void deleteCells(Sheet sheet, Collection<Cell> cells);
+}
@@ -0,0 +1,100 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.Cell;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+
+public class CellRepositoryImpl implements CellRepositoryCustom {
+
+    private static final String POSTGRES_UPSERT_SQL =
+            "INSERT INTO cells (sheet_id, row_index, column_index, " + CellValueColumns.NAMES + ") " +
+            "VALUES (?, ?, ?, " + CellValueColumns.PLACEHOLDERS + ") " +
+            "ON CONFLICT (sheet_id, row_index, column_index) DO UPDATE SET cell_value = EXCLUDED.cell_value, " +
+            "value_type = EXCLUDED.value_type, numeric_value = EXCLUDED.numeric_value, " +
+            "boolean_value = EXCLUDED.boolean_value, date_value = EXCLUDED.date_value";
+
+    private static final String MERGE_UPSERT_SQL =
+            "MERGE INTO cells (sheet_id, row_index, column_index, " + CellValueColumns.NAMES + ") " +
+            "KEY (sheet_id, row_index, column_index) VALUES (?, ?, ?, " + CellValueColumns.PLACEHOLDERS + ")";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM cells WHERE sheet_id = ? AND row_index = ? AND column_index = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spreadsheet.cells.batch-size:1000}")
+    private int batchSize;
+
+    private volatile Boolean postgres;
+
+    public CellRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public BatchCellWriter openBatchWriter(Sheet sheet) {
+        entityManager.flush();
+        return new BatchCellWriter(jdbcTemplate, sheet.getId(), batchSize);
+    }
+
+    @Override
+    public CellWriter openBulkWriter(Sheet sheet) {
+        if (!isPostgres()) {
+            return openBatchWriter(sheet);
+        }
+        entityManager.flush();
+        return new CopyCellWriter(jdbcTemplate.getDataSource(), sheet.getId());
+    }
+
+    @Override
+    public void upsertCells(Sheet sheet, Collection<Cell> cells) {
+        if (cells.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+
+        String sql = isPostgres() ? POSTGRES_UPSERT_SQL : MERGE_UPSERT_SQL;
+        jdbcTemplate.batchUpdate(sql, cells, batchSize, (ps, cell) -> {
+            ps.setLong(1, sheet.getId());
+            ps.setInt(2, cell.getRowIndex());
+            ps.setInt(3, cell.getColumnIndex());
+            CellValueColumns.bind(ps, 4, cell.getValue(), cell.getValueType());
+        });
+    }
+
+    @Override
+    public void deleteCells(Sheet sheet, Collection<Cell> cells) {
+        if (cells.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+
+        jdbcTemplate.batchUpdate(DELETE_SQL, cells, batchSize, (ps, cell) -> {
+            ps.setLong(1, sheet.getId());
+            ps.setInt(2, cell.getRowIndex());
+            ps.setInt(3, cell.getColumnIndex());
+        });
+    }
+
+    /**
+     * PostgreSQL gets COPY and INSERT ... ON CONFLICT, other databases (H2)
+     * JDBC batches and the MERGE statement
+     */
+    private boolean isPostgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+}
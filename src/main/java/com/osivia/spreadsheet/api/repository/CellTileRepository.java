@@ -0,0 +1,95 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellTile;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CellTileRepository extends JpaRepository<CellTile, Long> {
+
+    /**
+     * Tile content read without attaching the entity to the persistence context
+     */
+    interface TileData {
+        Integer getTileRow();
+        Integer getTileColumn();
+        byte[] getData();
+    }
+
+    Optional<CellTile> findBySheetAndTileRowAndTileColumn(Sheet sheet, Integer tileRow, Integer tileColumn);
+
+    /**
+     * Find the tiles of one band of rows, left to right
+     */
+    @Query("SELECT t FROM CellTile t WHERE t.sheet = :sheet AND t.tileRow = :tileRow ORDER BY t.tileColumn")
+    List<CellTile> findBand(@Param("sheet") Sheet sheet, @Param("tileRow") Integer tileRow);
+
+    /**
+     * Find the tiles of one band of rows starting at a tile column, left to right
+     */
+    @Query("SELECT t FROM CellTile t WHERE t.sheet = :sheet AND t.tileRow = :tileRow " +
+           "AND t.tileColumn >= :fromTileColumn ORDER BY t.tileColumn")
+    List<CellTile> findBandFrom(@Param("sheet") Sheet sheet, @Param("tileRow") Integer tileRow,
+                                @Param("fromTileColumn") Integer fromTileColumn);
+
+    List<CellTile> findBySheetAndTileColumn(Sheet sheet, Integer tileColumn);
+
+    /**
+     * Read the content of the tiles of one band of rows, left to right
+     */
+    @Query("SELECT t.tileRow AS tileRow, t.tileColumn AS tileColumn, t.data AS data FROM CellTile t " +
+           "WHERE t.sheet = :sheet AND t.tileRow = :tileRow ORDER BY t.tileColumn")
+    List<TileData> readBand(@Param("sheet") Sheet sheet, @Param("tileRow") Integer tileRow);
+
+    /**
+     * Read the content of the tiles of one band of rows between two tile columns (inclusive), left to right
+     */
+    @Query("SELECT t.tileRow AS tileRow, t.tileColumn AS tileColumn, t.data AS data FROM CellTile t " +
+           "WHERE t.sheet = :sheet AND t.tileRow = :tileRow " +
+           "AND t.tileColumn BETWEEN :fromTileColumn AND :toTileColumn ORDER BY t.tileColumn")
+    List<TileData> readBand(@Param("sheet") Sheet sheet, @Param("tileRow") Integer tileRow,
+                            @Param("fromTileColumn") Integer fromTileColumn, @Param("toTileColumn") Integer toTileColumn);
+
+    /**
+     * Read the content of the tiles of one tile column, top to bottom
+     */
+    @Query("SELECT t.tileRow AS tileRow, t.tileColumn AS tileColumn, t.data AS data FROM CellTile t " +
+           "WHERE t.sheet = :sheet AND t.tileColumn = :tileColumn ORDER BY t.tileRow")
+    List<TileData> readColumn(@Param("sheet") Sheet sheet, @Param("tileColumn") Integer tileColumn);
+
+    /**
+     * Find the rightmost tile column holding tiles
+     */
+    @Query("SELECT MAX(t.tileColumn) FROM CellTile t WHERE t.sheet = :sheet")
+    Integer findMaxTileColumn(@Param("sheet") Sheet sheet);
+
+    /**
+     * Find the bands of rows holding tiles between two tile rows (inclusive)
+     */
+    @Query("SELECT DISTINCT t.tileRow FROM CellTile t WHERE t.sheet = :sheet " +
+           "AND t.tileRow BETWEEN :fromTileRow AND :toTileRow ORDER BY t.tileRow")
+    List<Integer> findTileRows(@Param("sheet") Sheet sheet, @Param("fromTileRow") Integer fromTileRow,
+                               @Param("toTileRow") Integer toTileRow);
+
+    /**
+     * Delete the tiles of the bands of rows between two tile rows (inclusive)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CellTile t WHERE t.sheet = :sheet AND t.tileRow BETWEEN :fromTileRow AND :toTileRow")
+    int deleteBands(@Param("sheet") Sheet sheet, @Param("fromTileRow") Integer fromTileRow,
+                    @Param("toTileRow") Integer toTileRow);
+
+    /**
+     * Delete all tiles of a sheet
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CellTile t WHERE t.sheet = :sheet")
+    int deleteBySheet(@Param("sheet") Sheet sheet);
+}
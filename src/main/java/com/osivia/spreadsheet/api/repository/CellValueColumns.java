@@ -0,0 +1,52 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+/**
+ * Value columns of the cells table shared by the JDBC writers: the text and its typed copies
+ */
+final class CellValueColumns {
+
+    static final String NAMES = "cell_value, value_type, numeric_value, boolean_value, date_value";
+
+    static final String PLACEHOLDERS = "?, ?, ?, ?, ?";
+
+    private CellValueColumns() {
+    }
+
+    /**
+     * Binds the five value columns starting at the given parameter index
+     */
+    static void bind(PreparedStatement ps, int index, String value, CellValueType type) throws SQLException {
+        ps.setString(index, value);
+        ps.setString(index + 1, type.name());
+
+        Double number = CellValues.numericValue(value, type);
+        if (number != null) {
+            ps.setDouble(index + 2, number);
+        } else {
+            ps.setNull(index + 2, Types.DOUBLE);
+        }
+
+        Boolean bool = CellValues.booleanValue(value, type);
+        if (bool != null) {
+            ps.setBoolean(index + 3, bool);
+        } else {
+            ps.setNull(index + 3, Types.BOOLEAN);
+        }
+
+        LocalDateTime date = CellValues.dateValue(value, type);
+        if (date != null) {
+            ps.setTimestamp(index + 4, Timestamp.valueOf(date));
+        } else {
+            ps.setNull(index + 4, Types.TIMESTAMP);
+        }
+    }
+}
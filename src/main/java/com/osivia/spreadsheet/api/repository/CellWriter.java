@@ -0,0 +1,37 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+
+/**
+ * Streams new cells of one sheet into the cells table.
+ * Cells must not exist yet; writers are not thread-safe and must be
+ * closed before the connection is used for anything else.
+ */
+public interface CellWriter extends AutoCloseable {
+
+    /**
+     * Queues a cell, sending it to the database once enough are buffered
+     */
+    void add(int row, int column, String value, CellValueType type);
+
+    /**
+     * Queues a cell typed from its text
+     */
+    default void add(int row, int column, String value) {
+        add(row, column, value, CellValues.infer(value));
+    }
+
+    /**
+     * Sends the queued cells to the database
+     */
+    void flush();
+
+    /**
+     * Number of cells written (or queued) so far
+     */
+    long getCount();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,157 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams cells of one sheet into PostgreSQL with COPY ... FROM STDIN.
+ * Rows are encoded in the COPY text format and sent in chunks, so memory
+ * stays constant whatever the number of cells. The COPY uses the connection
+ * bound to the current transaction and is started on the first flush.
+ */
+public class CopyCellWriter implements CellWriter {
+
+    private static final String COPY_SQL =
+            "COPY cells (sheet_id, row_index, column_index, " + CellValueColumns.NAMES + ") FROM STDIN";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+
+    private final String sheetPrefix;
+
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+
+    private Connection connection;
+
+    private CopyIn copyIn;
+
+    private long count;
+
+    public CopyCellWriter(DataSource dataSource, Long sheetId) {
+        this.dataSource = dataSource;
+        this.sheetPrefix = sheetId + "\t";
+    }
+
+    @Override
+    public void add(int row, int column, String value, CellValueType type) {
+        buffer.append(sheetPrefix).append(row).append('\t').append(column).append('\t');
+        appendEscaped(value);
+        buffer.append('\t').append(type.name()).append('\t');
+        appendNullable(CellValues.numericValue(value, type));
+        buffer.append('\t');
+        appendNullable(CellValues.booleanValue(value, type));
+        buffer.append('\t');
+        appendNullable(CellValues.dateValue(value, type));
+        buffer.append('\n');
+        count++;
+
+        if (buffer.length() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (buffer.length() == 0) {
+            return;
+        }
+
+        try {
+            if (copyIn == null) {
+                connection = DataSourceUtils.getConnection(dataSource);
+                copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            }
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        } catch (SQLException e) {
+            cancel();
+            throw new DataAccessResourceFailureException("COPY into cells failed", e);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() {
+        flush();
+
+        if (copyIn != null) {
+            try {
+                copyIn.endCopy();
+            } catch (SQLException e) {
+                cancel();
+                throw new DataAccessResourceFailureException("COPY into cells failed", e);
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Appends a number, boolean or timestamp; their text forms need no escaping
+     */
+    private void appendNullable(Object value) {
+        buffer.append(value != null ? value.toString() : "\\N");
+    }
+
+    private void appendEscaped(String value) {
+        if (value == null) {
+            buffer.append("\\N");
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+
+    private void cancel() {
+        try {
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // The surrounding transaction is rolled back anyway
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        if (connection != null) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        connection = null;
+        copyIn = null;
+    }
+}
@@ -2,8 +2,57 @@ package com.osivia.spreadsheet.api.repository;
 
 import com.osivia.spreadsheet.api.entity.Sheet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface SheetRepository extends JpaRepository<Sheet, Long> {
+
+    /**
+     * Sheet fields listed with their spreadsheet
+     */
+    interface SheetSummary {
+        Long getSpreadsheetId();
+        Long getId();
+        String getName();
+        Integer getOrderIndex();
+        Integer getMaxRow();
+        Integer getMaxColumn();
+        Long getCellCount();
+        Long getByteSize();
+    }
+
+    /**
+     * Sheets of the spreadsheets owned by or shared with a user, in one query
+     */
+    @Query("SELECT sh.spreadsheet.id AS spreadsheetId, sh.id AS id, sh.name AS name, sh.orderIndex AS orderIndex, " +
+           "sh.maxRow AS maxRow, sh.maxColumn AS maxColumn, sh.cellCount AS cellCount, sh.byteSize AS byteSize " +
+           "FROM Sheet sh JOIN sh.spreadsheet s " +
+           "WHERE s.owner.id = :userId " +
+           "OR EXISTS (SELECT p FROM SpreadsheetPermission p WHERE p.spreadsheet = s AND p.user.id = :userId) " +
+           "ORDER BY sh.spreadsheet.id, sh.orderIndex")
+    List<SheetSummary> findSummariesVisibleTo(@Param("userId") Long userId);
+
+    /**
+     * Load a sheet and lock it until the end of the transaction, serializing
+     * the writers that update its row map
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Sheet s WHERE s.id = :id")
+    Optional<Sheet> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Move the version of a sheet forward, in the database so that no concurrent change is lost
+     */
+    @Modifying
+    @Query("UPDATE Sheet s SET s.version = COALESCE(s.version, 0) + 1, s.updatedAt = :now WHERE s.id = :id")
+    int incrementVersion(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.osivia.spreadsheet.api.repository;
 
+import com.osivia.spreadsheet.api.entity.PermissionType;
 import com.osivia.spreadsheet.api.entity.Spreadsheet;
 import com.osivia.spreadsheet.api.entity.SpreadsheetPermission;
 import com.osivia.spreadsheet.api.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -13,4 +16,7 @@ public interface SpreadsheetPermissionRepository extends JpaRepository<Spreadshe
     Optional<SpreadsheetPermission> findBySpreadsheetAndUser(Spreadsheet spreadsheet, User user);
     List<SpreadsheetPermission> findByUser(User user);
     List<SpreadsheetPermission> findBySpreadsheet(Spreadsheet spreadsheet);
+
+    @Query("SELECT p.permissionType FROM SpreadsheetPermission p WHERE p.spreadsheet.id = :spreadsheetId AND p.user.id = :userId")
+    Optional<PermissionType> findPermissionType(@Param("spreadsheetId") Long spreadsheetId, @Param("userId") Long userId);
 }
\ No newline at end of file
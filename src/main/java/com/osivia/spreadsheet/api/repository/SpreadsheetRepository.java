@@ -1,12 +1,55 @@
 package com.osivia.spreadsheet.api.repository;
 
+import com.osivia.spreadsheet.api.entity.PermissionType;
 import com.osivia.spreadsheet.api.entity.Spreadsheet;
 import com.osivia.spreadsheet.api.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SpreadsheetRepository extends JpaRepository<Spreadsheet, Long> {
+
+    /**
+     * Spreadsheet fields listed to a user, with the permission granted to that user (null for the owner)
+     */
+    interface SpreadsheetSummary {
+        Long getId();
+        String getName();
+        String getDescription();
+        String getOwnerUsername();
+        Long getMediaCount();
+        Long getVersion();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+        PermissionType getPermissionType();
+    }
+
     List<Spreadsheet> findByOwner(User owner);
+
+    @Query("SELECT s.owner.id FROM Spreadsheet s WHERE s.id = :id")
+    Optional<Long> findOwnerId(@Param("id") Long id);
+
+    /**
+     * Spreadsheets owned by or shared with a user, in one query
+     */
+    @Query("SELECT s.id AS id, s.name AS name, s.description AS description, o.username AS ownerUsername, " +
+           "(SELECT COUNT(m) FROM Media m WHERE m.spreadsheet = s) AS mediaCount, " +
+           "s.version AS version, s.createdAt AS createdAt, s.updatedAt AS updatedAt, p.permissionType AS permissionType " +
+           "FROM Spreadsheet s JOIN s.owner o LEFT JOIN s.permissions p ON p.user.id = :userId " +
+           "WHERE o.id = :userId OR p.id IS NOT NULL ORDER BY s.id")
+    List<SpreadsheetSummary> findSummariesVisibleTo(@Param("userId") Long userId);
+
+    /**
+     * Move the version of a spreadsheet forward, in the database so that no concurrent change is lost
+     */
+    @Modifying
+    @Query("UPDATE Spreadsheet s SET s.version = COALESCE(s.version, 0) + 1, s.updatedAt = :now WHERE s.id = :id")
+    int incrementVersion(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.osivia.spreadsheet.api.security;
 
+import com.osivia.spreadsheet.api.service.UserDetailsImpl;
 import com.osivia.spreadsheet.api.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -28,10 +29,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                                   FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            UserDetailsImpl principal = (jwt != null) ? jwtUtils.getPrincipalFromJwtToken(jwt) : null;
+            if (principal != null) {
+                // The principal comes from the token claims; only tokens issued without them need the user
+                UserDetails userDetails = (principal.getId() != null)
+                    ? principal
+                    : userDetailsService.loadUserByUsername(principal.getUsername());
                 UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(
                         userDetails, 
@@ -1,41 +1,101 @@
 package com.osivia.spreadsheet.api.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.osivia.spreadsheet.api.service.UserDetailsImpl;
 import io.jsonwebtoken.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Issues and verifies the JWT tokens.
+ *
+ * Tokens carry the user id, email and authorities as claims, so that the principal of
+ * a request is built from its token without loading the user. Verified tokens are kept
+ * for a short while by SHA-256 hash, so that the requests of a client do not verify the
+ * HS512 signature of the same token again.
+ */
 @Component
 public class JwtUtils {
-    
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-    
-    @Value("${jwt.expiration}")
-    private int jwtExpirationMs;
-    
+
+    private static final String USER_ID_CLAIM = "uid";
+
+    private static final String EMAIL_CLAIM = "email";
+
+    private static final String AUTHORITIES_CLAIM = "roles";
+
+    private final String jwtSecret;
+
+    private final int jwtExpirationMs;
+
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtUtils(@Value("${jwt.secret}") String jwtSecret,
+                    @Value("${jwt.expiration}") int jwtExpirationMs,
+                    @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheMaxSize,
+                    @Value("${jwt.verified-cache.expire-after-write:5m}") Duration verifiedCacheExpiry) {
+        this.jwtSecret = jwtSecret;
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(verifiedCacheMaxSize)
+            .expireAfterWrite(verifiedCacheExpiry)
+            .build();
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
-        
+        List<String> authorities = userPrincipal.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .collect(Collectors.toList());
+
         return Jwts.builder()
             .setSubject((userPrincipal.getUsername()))
+            .claim(USER_ID_CLAIM, userPrincipal.getId())
+            .claim(EMAIL_CLAIM, userPrincipal.getEmail())
+            .claim(AUTHORITIES_CLAIM, authorities)
             .setIssuedAt(new Date())
             .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
             .signWith(SignatureAlgorithm.HS512, jwtSecret)
             .compact();
     }
-    
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+
+    /**
+     * Principal of a token, verified once, or null if the token is not valid.
+     * The principal has no id for tokens issued before the id was a claim.
+     */
+    public UserDetailsImpl getPrincipalFromJwtToken(String token) {
+        String hash = hash(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(hash);
+        if (verified != null && verified.expiresAt > System.currentTimeMillis()) {
+            return verified.principal;
+        }
+
+        Claims claims = parseClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        UserDetailsImpl principal = buildPrincipal(claims);
+        long expiresAt = (claims.getExpiration() != null) ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        verifiedTokens.put(hash, new VerifiedToken(principal, expiresAt));
+        return principal;
     }
-    
-    public boolean validateJwtToken(String authToken) {
+
+    private Claims parseClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody();
         } catch (SignatureException e) {
             System.err.println("Invalid JWT signature: " + e.getMessage());
         } catch (MalformedJwtException e) {
@@ -47,7 +107,44 @@ public class JwtUtils {
         } catch (IllegalArgumentException e) {
             System.err.println("JWT claims string is empty: " + e.getMessage());
         }
-        
-        return false;
+
+        return null;
+    }
+
+    private static UserDetailsImpl buildPrincipal(Claims claims) {
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        Collection<?> roles = claims.get(AUTHORITIES_CLAIM, Collection.class);
+        List<GrantedAuthority> authorities = (roles == null) ? List.of() : roles.stream()
+            .map(role -> new SimpleGrantedAuthority(role.toString()))
+            .collect(Collectors.toList());
+
+        return new UserDetailsImpl(
+            (userId != null) ? userId.longValue() : null,
+            claims.getSubject(),
+            claims.get(EMAIL_CLAIM, String.class),
+            null,
+            authorities
+        );
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class VerifiedToken {
+
+        private final UserDetailsImpl principal;
+
+        private final long expiresAt;
+
+        private VerifiedToken(UserDetailsImpl principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
     }
-}
\ No newline at end of file
+}
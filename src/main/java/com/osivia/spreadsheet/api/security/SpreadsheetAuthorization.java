@@ -0,0 +1,183 @@
+package com.osivia.spreadsheet.api.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.osivia.spreadsheet.api.entity.PermissionType;
+import com.osivia.spreadsheet.api.entity.Spreadsheet;
+import com.osivia.spreadsheet.api.entity.User;
+import com.osivia.spreadsheet.api.exception.ResourceNotFoundException;
+import com.osivia.spreadsheet.api.exception.UnauthorizedException;
+import com.osivia.spreadsheet.api.repository.SpreadsheetPermissionRepository;
+import com.osivia.spreadsheet.api.repository.SpreadsheetRepository;
+import com.osivia.spreadsheet.api.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Checks the access of users to spreadsheets.
+ *
+ * The access of a user to a spreadsheet (owner, granted permission or none) is cached
+ * by (user id, spreadsheet id), so that repeated operations on the same spreadsheet
+ * run no permission query. Entries are evicted when a permission is granted or revoked
+ * and when a spreadsheet is deleted, again once the transaction has committed so that
+ * a concurrent check cannot cache the state from before the change. They also expire
+ * after a while, for changes made by other instances of the application.
+ */
+@Component
+public class SpreadsheetAuthorization {
+
+    /**
+     * Access levels, from the lowest to the highest
+     */
+    private enum Access {
+        NONE, VIEW, EDIT, ADMIN, OWNER
+    }
+
+    private static final class AclKey {
+
+        private final long userId;
+
+        private final long spreadsheetId;
+
+        private AclKey(long userId, long spreadsheetId) {
+            this.userId = userId;
+            this.spreadsheetId = spreadsheetId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AclKey)) {
+                return false;
+            }
+            AclKey other = (AclKey) o;
+            return userId == other.userId && spreadsheetId == other.spreadsheetId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, spreadsheetId);
+        }
+    }
+
+    private final SpreadsheetRepository spreadsheetRepository;
+
+    private final SpreadsheetPermissionRepository permissionRepository;
+
+    private final UserRepository userRepository;
+
+    private final Cache<AclKey, Access> acl;
+
+    // Usernames never change, their ids can be kept
+    private final Cache<String, Long> userIds;
+
+    public SpreadsheetAuthorization(SpreadsheetRepository spreadsheetRepository,
+                                    SpreadsheetPermissionRepository permissionRepository,
+                                    UserRepository userRepository,
+                                    @Value("${spreadsheet.acl-cache.max-size:100000}") long maxSize,
+                                    @Value("${spreadsheet.acl-cache.expire-after-write:10m}") Duration expireAfterWrite,
+                                    MeterRegistry meterRegistry) {
+        this.spreadsheetRepository = spreadsheetRepository;
+        this.permissionRepository = permissionRepository;
+        this.userRepository = userRepository;
+        this.acl = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        this.userIds = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, acl, "acl");
+    }
+
+    /**
+     * @throws UnauthorizedException if the user does not have the required permission on the spreadsheet
+     */
+    public void check(Spreadsheet spreadsheet, String username, PermissionType requiredPermission) {
+        check(spreadsheet.getId(), username, requiredPermission);
+    }
+
+    /**
+     * @throws UnauthorizedException if the user does not have the required permission on the spreadsheet
+     */
+    public void check(Long spreadsheetId, String username, PermissionType requiredPermission) {
+        Access access = getAccess(spreadsheetId, username);
+
+        if (access == Access.NONE) {
+            throw new UnauthorizedException("No permission to access this spreadsheet");
+        }
+
+        if (requiredPermission == PermissionType.EDIT && access.compareTo(Access.EDIT) < 0) {
+            throw new UnauthorizedException("No edit permission for this spreadsheet");
+        }
+
+        if (requiredPermission == PermissionType.ADMIN && access.compareTo(Access.ADMIN) < 0) {
+            throw new UnauthorizedException("Admin permission required");
+        }
+    }
+
+    /**
+     * Access of a user to a spreadsheet as shown to clients: OWNER, a permission type, or null
+     */
+    public String getAccessLevel(Long spreadsheetId, String username) {
+        Access access = getAccess(spreadsheetId, username);
+        return (access != Access.NONE) ? access.name() : null;
+    }
+
+    /**
+     * Evicts the access of a user to a spreadsheet after a permission change
+     */
+    public void evict(Long spreadsheetId, User user) {
+        AclKey key = new AclKey(user.getId(), spreadsheetId);
+        afterCommit(() -> acl.invalidate(key));
+    }
+
+    /**
+     * Evicts the access of every user to a deleted spreadsheet
+     */
+    public void evictSpreadsheet(Long spreadsheetId) {
+        afterCommit(() -> acl.asMap().keySet().removeIf(key -> key.spreadsheetId == spreadsheetId));
+    }
+
+    private Access getAccess(Long spreadsheetId, String username) {
+        Long userId = userIds.get(username, name -> userRepository.findByUsername(name)
+            .map(User::getId)
+            .orElse(null));
+        if (userId == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+
+        return acl.get(new AclKey(userId, spreadsheetId), key -> {
+            Long ownerId = spreadsheetRepository.findOwnerId(spreadsheetId)
+                .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
+            if (ownerId.equals(userId)) {
+                return Access.OWNER;
+            }
+            return permissionRepository.findPermissionType(spreadsheetId, userId)
+                .map(type -> Access.valueOf(type.name()))
+                .orElse(Access.NONE);
+        });
+    }
+
+    /**
+     * Runs an eviction now, and again after the commit of the current transaction if there is one
+     */
+    private void afterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
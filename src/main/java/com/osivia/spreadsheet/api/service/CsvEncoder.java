@@ -0,0 +1,154 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Writes cells, passed in row then column order, as the UTF-8 lines of a CSV.
+ *
+ * The first line holds the row firstRow and the first field the column firstColumn. Every line
+ * is padded with empty fields up to lastColumn and rows without cells are written as empty lines,
+ * so the output is a rectangle ending with the last row holding a cell (one empty line when there
+ * is no cell). Values holding the delimiter, a quote or a line break are quoted. Cells outside
+ * of the columns firstColumn..lastColumn or above firstRow, such as those written by a concurrent
+ * update after the width was read, are left out so that every line keeps the same number of fields.
+ *
+ * Only the cells are visited: the empty fields and lines between them are counted and written
+ * as runs of delimiters, and values go to the buffered output as they are, without building
+ * strings, so the cost follows the number of cells and the size of the output.
+ */
+public class CsvEncoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    private final char delimiter;
+
+    private final int firstRow;
+
+    private final int firstColumn;
+
+    // Fields of every line
+    private final int width;
+
+    // Delimiters written by runs for empty fields
+    private final char[] delimiters;
+
+    // Line being written and next field to write in it, relative to the first row and column
+    private int line = -1;
+
+    private int nextField;
+
+    /**
+     * @param out not closed by the encoder, only flushed once the cells are written
+     */
+    public CsvEncoder(OutputStream out, char delimiter, int firstRow, int firstColumn, int lastColumn) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.delimiter = delimiter;
+        this.firstRow = firstRow;
+        this.firstColumn = firstColumn;
+        this.width = lastColumn - firstColumn + 1;
+        this.delimiters = new char[Math.max(Math.min(width, 1024), 1)];
+        Arrays.fill(delimiters, delimiter);
+    }
+
+    /**
+     * Writes the cells passed by cells to the visitor it is given, then ends the last line and flushes the output.
+     * Stops the cells on the first write error.
+     */
+    public void encode(Consumer<CellVisitor> cells) throws IOException {
+        try {
+            cells.accept(this::visit);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        endLine((line >= 0) ? nextField : 0);
+        writer.flush();
+    }
+
+    private void visit(int row, int column, String value, CellValueType type) {
+        try {
+            int cellLine = row - firstRow;
+            int field = column - firstColumn;
+            if (cellLine < 0 || field < 0 || field >= width) {
+                return;
+            }
+            if (cellLine != line) {
+                // End the current line, then the empty lines up to the one of the cell
+                if (line >= 0) {
+                    endLine(nextField);
+                }
+                for (int empty = line + 1; empty < cellLine; empty++) {
+                    endLine(0);
+                }
+                line = cellLine;
+                nextField = 0;
+            }
+
+            // Delimiters of the empty fields before the cell, and the one before its own field
+            if (field > 0) {
+                writeDelimiters(field - Math.max(nextField, 1) + 1);
+            }
+            writeValue(value);
+            nextField = field + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Pads a line with empty fields from the field fromField, then ends it
+     */
+    private void endLine(int fromField) throws IOException {
+        writeDelimiters(width - Math.max(fromField, 1));
+        writer.write('\n');
+    }
+
+    private void writeDelimiters(int count) throws IOException {
+        for (int left = count; left > 0; left -= delimiters.length) {
+            writer.write(delimiters, 0, Math.min(left, delimiters.length));
+        }
+    }
+
+    /**
+     * Writes a value, quoted with its quotes doubled when it holds the delimiter, a quote or a line break
+     */
+    private void writeValue(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        boolean quoted = false;
+        for (int i = 0; i < length && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value, 0, length);
+            return;
+        }
+
+        writer.write('"');
+        // Each quote ends a run and starts the next one, so it is written twice
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, start, i + 1 - start);
+                start = i;
+            }
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+}
@@ -0,0 +1,132 @@
+package com.osivia.spreadsheet.api.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An import or export run in the background by JobService, with the files it reads and writes.
+ *
+ * Its state is changed by the job thread and read by the requests polling it.
+ */
+public class Job {
+
+    public enum Type {
+        IMPORT_EXCEL, IMPORT_ZIP, EXPORT_EXCEL, EXPORT_ZIP
+    }
+
+    public enum Status {
+        PENDING, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Type type;
+
+    private final String owner;
+
+    // Name of the imported file, or of the exported one
+    private final String filename;
+
+    private final JobProgress progress = new JobProgress();
+
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile Long spreadsheetId;
+
+    private volatile String error;
+
+    private volatile LocalDateTime startedAt;
+
+    private volatile LocalDateTime finishedAt;
+
+    // Uploaded file of an import, deleted once the job is finished
+    private volatile Path input;
+
+    // File written by an export, kept until the job is forgotten
+    private volatile Path result;
+
+    Job(Type type, String owner, String filename, Long spreadsheetId) {
+        this.type = type;
+        this.owner = owner;
+        this.filename = filename;
+        this.spreadsheetId = spreadsheetId;
+    }
+
+    public String getId() { return id; }
+
+    public Type getType() { return type; }
+
+    public String getOwner() { return owner; }
+
+    public String getFilename() { return filename; }
+
+    public JobProgress getProgress() { return progress; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public Status getStatus() { return status; }
+
+    public Long getSpreadsheetId() { return spreadsheetId; }
+
+    public String getError() { return error; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    Path getInput() { return input; }
+
+    void setInput(Path input) { this.input = input; }
+
+    Path getResult() { return result; }
+
+    void setResult(Path result) { this.result = result; }
+
+    void start() {
+        startedAt = LocalDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    void succeed(Long spreadsheetId) {
+        this.spreadsheetId = spreadsheetId;
+        finishedAt = LocalDateTime.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+
+    void deleteInput() {
+        delete(input);
+        input = null;
+    }
+
+    void deleteFiles() {
+        deleteInput();
+        delete(result);
+        result = null;
+    }
+
+    private static void delete(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete: " + path + " - " + e.getMessage());
+        }
+    }
+}
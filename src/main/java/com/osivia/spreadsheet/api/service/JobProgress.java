@@ -0,0 +1,95 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows and bytes processed so far by an import or an export, readable while it runs.
+ *
+ * Bytes are those read from the imported file (the uncompressed sheet data for xlsx)
+ * or written to the exported one, rows are rows of sheets. Counters may be updated
+ * from several threads.
+ */
+public class JobProgress {
+
+    private final AtomicLong rows = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public void addRows(long count) {
+        rows.addAndGet(count);
+    }
+
+    /**
+     * Counts the rows of cells passed to the visitor, which come in row order
+     */
+    public CellVisitor countRows(CellVisitor visitor) {
+        int[] lastRow = {-1};
+        return (row, column, value, type) -> {
+            if (row != lastRow[0]) {
+                lastRow[0] = row;
+                rows.incrementAndGet();
+            }
+            visitor.visit(row, column, value, type);
+        };
+    }
+
+    public InputStream countBytes(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytes.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytes.addAndGet(read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                bytes.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    public OutputStream countBytes(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytes.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                bytes.addAndGet(length);
+            }
+        };
+    }
+}
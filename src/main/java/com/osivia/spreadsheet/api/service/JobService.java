@@ -0,0 +1,273 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.osivia.spreadsheet.api.dto.JobDTO;
+import com.osivia.spreadsheet.api.dto.SpreadsheetDTO;
+import com.osivia.spreadsheet.api.exception.ResourceNotFoundException;
+import com.osivia.spreadsheet.api.exception.UnauthorizedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports and exports run in the background, so that large files hold neither a request
+ * thread nor a transaction of the request while they are read or written.
+ *
+ * Jobs run on a pool of their own, bounded in threads and in queued jobs: when both are full,
+ * submissions are rejected with a RejectedExecutionException. Uploaded files are spooled to
+ * temporary files before the job is queued, and exports write their result to a temporary
+ * file that is downloaded once the job has succeeded. A job is only visible to the user who
+ * submitted it; once finished, it is kept for the retention time, then forgotten and its
+ * files deleted.
+ */
+@Service
+public class JobService {
+
+    private interface Task {
+
+        /**
+         * Runs the job
+         * @return the id of the imported or exported spreadsheet
+         */
+        Long run(Job job) throws Exception;
+    }
+
+    private final SpreadsheetService spreadsheetService;
+
+    private final ZipExportImportService zipService;
+
+    private final SpreadsheetExcelWriter excelWriter;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Cache<String, Job> jobs;
+
+    public JobService(SpreadsheetService spreadsheetService, ZipExportImportService zipService,
+                      SpreadsheetExcelWriter excelWriter,
+                      @Value("${spreadsheet.jobs.threads:2}") int threads,
+                      @Value("${spreadsheet.jobs.queue-capacity:100}") int queueCapacity,
+                      @Value("${spreadsheet.jobs.retention:1h}") Duration retention,
+                      MeterRegistry meterRegistry) {
+        this.spreadsheetService = spreadsheetService;
+        this.zipService = zipService;
+        this.excelWriter = excelWriter;
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "spreadsheet-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(Math.max(threads, 1), Math.max(threads, 1), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), threadFactory);
+        new ExecutorServiceMetrics(executor, "jobs", Tags.empty()).bindTo(meterRegistry);
+
+        // Jobs never expire while they are pending or running
+        long retentionNanos = retention.toNanos();
+        this.jobs = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Job>() {
+                @Override
+                public long expireAfterCreate(String id, Job job, long currentTime) {
+                    return job.isFinished() ? retentionNanos : Long.MAX_VALUE;
+                }
+
+                @Override
+                public long expireAfterUpdate(String id, Job job, long currentTime, long currentDuration) {
+                    return job.isFinished() ? retentionNanos : Long.MAX_VALUE;
+                }
+
+                @Override
+                public long expireAfterRead(String id, Job job, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            // Expired jobs are removed, and their files deleted, even without any other access
+            .scheduler(Scheduler.systemScheduler())
+            .removalListener((String id, Job job, RemovalCause cause) -> {
+                if (job != null && cause != RemovalCause.REPLACED) {
+                    job.deleteFiles();
+                }
+            })
+            .build();
+    }
+
+    public JobDTO submitExcelImport(MultipartFile file, String username) throws IOException {
+        Job job = new Job(Job.Type.IMPORT_EXCEL, username, file.getOriginalFilename(), null);
+        spool(job, file);
+        return submit(job, running -> spreadsheetService.importFromExcel(
+            new FileSystemResource(running.getInput()), running.getFilename(), running.getOwner(), running.getProgress()).getId());
+    }
+
+    public JobDTO submitZipImport(MultipartFile file, String username) throws IOException {
+        Job job = new Job(Job.Type.IMPORT_ZIP, username, file.getOriginalFilename(), null);
+        spool(job, file);
+        return submit(job, running -> zipService.importSpreadsheetFromZip(
+            new FileSystemResource(running.getInput()), running.getOwner(), running.getProgress()).getId());
+    }
+
+    /**
+     * @throws ResourceNotFoundException if the spreadsheet does not exist
+     * @throws com.osivia.spreadsheet.api.exception.UnauthorizedException if the user cannot view it
+     */
+    public JobDTO submitExcelExport(Long spreadsheetId, String username) {
+        spreadsheetService.getSpreadsheet(spreadsheetId, username);
+        Job job = new Job(Job.Type.EXPORT_EXCEL, username, "spreadsheet_" + spreadsheetId + ".xlsx", spreadsheetId);
+        return submit(job, running -> {
+            // Read again when the job starts, with the sheets of that time
+            SpreadsheetDTO spreadsheet = spreadsheetService.getSpreadsheet(spreadsheetId, running.getOwner());
+            writeResult(running, ".xlsx", out -> excelWriter.write(spreadsheet, out, running.getProgress()));
+            return spreadsheetId;
+        });
+    }
+
+    /**
+     * @throws ResourceNotFoundException if the spreadsheet does not exist
+     * @throws com.osivia.spreadsheet.api.exception.UnauthorizedException if the user cannot view it
+     */
+    public JobDTO submitZipExport(Long spreadsheetId, String username) {
+        SpreadsheetDTO spreadsheet = spreadsheetService.getSpreadsheet(spreadsheetId, username);
+        String filename = spreadsheet.getName().replaceAll("[^a-zA-Z0-9.-]", "_") + ".zip";
+        Job job = new Job(Job.Type.EXPORT_ZIP, username, filename, spreadsheetId);
+        return submit(job, running -> {
+            spreadsheetService.getSpreadsheet(spreadsheetId, running.getOwner());
+            writeResult(running, ".zip", out -> zipService.exportSpreadsheetToZip(spreadsheetId, out, running.getProgress()));
+            return spreadsheetId;
+        });
+    }
+
+    /**
+     * @throws ResourceNotFoundException if there is no such job for the user
+     */
+    public JobDTO getJob(String id, String username) {
+        return convertToDTO(findJob(id, username));
+    }
+
+    /**
+     * File written by an export job
+     * @throws IllegalArgumentException if the job has not succeeded or has no result
+     */
+    public Path getResult(String id, String username) {
+        Job job = findJob(id, username);
+        Path result = job.getResult();
+        if (job.getStatus() != Job.Status.SUCCEEDED || result == null) {
+            throw new IllegalArgumentException("Job " + id + " has no result to download");
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.invalidateAll();
+    }
+
+    private Job findJob(String id, String username) {
+        Job job = jobs.getIfPresent(id);
+        // The jobs of other users are not revealed
+        if (job == null || !job.getOwner().equals(username)) {
+            throw new ResourceNotFoundException("Job not found");
+        }
+        return job;
+    }
+
+    private void spool(Job job, MultipartFile file) throws IOException {
+        Path input = Files.createTempFile("spreadsheet-job-", ".upload");
+        job.setInput(input);
+        try {
+            file.transferTo(input);
+        } catch (IOException | RuntimeException e) {
+            job.deleteFiles();
+            throw e;
+        }
+    }
+
+    private JobDTO submit(Job job, Task task) {
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            throw e;
+        }
+        return convertToDTO(job);
+    }
+
+    private void run(Job job, Task task) {
+        job.start();
+        try {
+            job.succeed(task.run(job));
+        } catch (Throwable e) {
+            job.fail(publicError(e));
+            job.deleteFiles();
+        } finally {
+            job.deleteInput();
+            // Updated so that the retention starts
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    /**
+     * Error shown to the user: the message of request errors, like those of the same exceptions
+     * answered by the API; other failures may hold SQL or file paths, so they are only logged
+     */
+    private static String publicError(Throwable e) {
+        boolean requestError = e instanceof IllegalArgumentException || e instanceof ResourceNotFoundException
+                || e instanceof UnauthorizedException;
+        if (requestError && e.getMessage() != null) {
+            return e.getMessage();
+        }
+        System.err.println("Job failed: " + e);
+        e.printStackTrace();
+        return "Job failed";
+    }
+
+    private interface ResultWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static void writeResult(Job job, String suffix, ResultWriter writer) throws IOException {
+        Path result = Files.createTempFile("spreadsheet-job-", suffix);
+        job.setResult(result);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(result), 64 * 1024)) {
+            writer.write(out);
+        }
+    }
+
+    private JobDTO convertToDTO(Job job) {
+        JobDTO dto = new JobDTO();
+        dto.setId(job.getId());
+        dto.setType(job.getType().name());
+        dto.setStatus(job.getStatus().name());
+        dto.setSpreadsheetId(job.getSpreadsheetId());
+        dto.setFilename(job.getFilename());
+        dto.setRowsProcessed(job.getProgress().getRows());
+        dto.setBytesProcessed(job.getProgress().getBytes());
+        dto.setError(job.getError());
+        dto.setCreatedAt(job.getCreatedAt());
+        dto.setStartedAt(job.getStartedAt());
+        dto.setFinishedAt(job.getFinishedAt());
+        return dto;
+    }
+}
@@ -4,10 +4,9 @@ package com.osivia.spreadsheet.api.service;
 
 import com.osivia.spreadsheet.api.entity.*;
 import com.osivia.spreadsheet.api.exception.ResourceNotFoundException;
-import com.osivia.spreadsheet.api.exception.UnauthorizedException;
 import com.osivia.spreadsheet.api.repository.MediaRepository;
 import com.osivia.spreadsheet.api.repository.SpreadsheetRepository;
-import com.osivia.spreadsheet.api.repository.UserRepository;
+import com.osivia.spreadsheet.api.security.SpreadsheetAuthorization;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
@@ -22,6 +21,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Service
@@ -35,18 +35,15 @@ public class MediaService {
     
     private final SpreadsheetRepository spreadsheetRepository;
     
-    private final UserRepository userRepository;
-    
-    private final SpreadsheetService spreadsheetService;
+    private final SpreadsheetAuthorization authorization;
 
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
-    public MediaService(MediaRepository mediaRepository, SpreadsheetRepository spreadsheetRepository, UserRepository userRepository, SpreadsheetService spreadsheetService) {
+    public MediaService(MediaRepository mediaRepository, SpreadsheetRepository spreadsheetRepository, SpreadsheetAuthorization authorization) {
         this.mediaRepository = mediaRepository;
         this.spreadsheetRepository = spreadsheetRepository;
-        this.userRepository = userRepository;
-        this.spreadsheetService = spreadsheetService;
+        this.authorization = authorization;
     }
 
 
@@ -55,18 +52,7 @@ public class MediaService {
             .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
         
         // Check edit permission
-        if (!spreadsheet.getOwner().getUsername().equals(username)) {
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            
-            SpreadsheetPermission permission = spreadsheetService.getPermissionRepository()
-                .findBySpreadsheetAndUser(spreadsheet, user)
-                .orElseThrow(() -> new UnauthorizedException("No permission to upload media"));
-            
-            if (permission.getPermissionType() == PermissionType.VIEW) {
-                throw new UnauthorizedException("Edit permission required to upload media");
-            }
-        }
+        authorization.check(spreadsheet, username, PermissionType.EDIT);
         
         // Create upload directory if it doesn't exist
         Path uploadDir = Paths.get(uploadPath);
@@ -93,7 +79,9 @@ public class MediaService {
         media.setFileSize(file.getSize());
         media.setSpreadsheet(spreadsheet);
         
-        return mediaRepository.save(media);
+        Media saved = mediaRepository.save(media);
+        spreadsheetRepository.incrementVersion(spreadsheet.getId(), LocalDateTime.now());
+        return saved;
     }
     
     public Resource downloadMedia(Long mediaId, String username) throws MalformedURLException {
@@ -102,14 +90,7 @@ public class MediaService {
         
         // Check view permission
         Spreadsheet spreadsheet = media.getSpreadsheet();
-        if (!spreadsheet.getOwner().getUsername().equals(username)) {
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            
-            spreadsheetService.getPermissionRepository()
-                .findBySpreadsheetAndUser(spreadsheet, user)
-                .orElseThrow(() -> new UnauthorizedException("No permission to access this media"));
-        }
+        authorization.check(spreadsheet, username, PermissionType.VIEW);
 
         Path targetPath = Paths.get(uploadDir, media.getFilename());
         Path filePath = Paths.get(targetPath.toUri());
@@ -128,18 +109,7 @@ public class MediaService {
         
         // Check permission
         Spreadsheet spreadsheet = media.getSpreadsheet();
-        if (!spreadsheet.getOwner().getUsername().equals(username)) {
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            
-            SpreadsheetPermission permission = spreadsheetService.getPermissionRepository()
-                .findBySpreadsheetAndUser(spreadsheet, user)
-                .orElseThrow(() -> new UnauthorizedException("No permission to delete media"));
-            
-            if (permission.getPermissionType() == PermissionType.VIEW) {
-                throw new UnauthorizedException("Edit permission required to delete media");
-            }
-        }
+        authorization.check(spreadsheet, username, PermissionType.EDIT);
         
         // Delete file
         Path targetPath = Paths.get(uploadDir, media.getFilename());
@@ -149,6 +119,7 @@ public class MediaService {
         
         // Delete entity
         mediaRepository.delete(media);
+        spreadsheetRepository.incrementVersion(spreadsheet.getId(), LocalDateTime.now());
     }
     
     public Media getMediaById(Long id) {
@@ -0,0 +1,145 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+import com.osivia.spreadsheet.api.storage.SparseGrid;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cells of the most read sheets, by position, kept in memory.
+ *
+ * Entries are stamped with the version of the sheet they were read at and are only
+ * used while the sheet still has that version, so a change committed by another
+ * transaction can never be served from the cache. Changes also drop the entry to
+ * free its memory early. Cells are kept in a SparseGrid, with their values on or off
+ * the heap. The cache is bounded by the size of the grids (W-TinyLFU eviction) and
+ * sheets larger than max-sheet-cells are never cached. It is only filled by full and
+ * paged reads of sheets whose cell count is known to fit: larger sheets and exports are
+ * streamed without buffering their cells.
+ * Hits, misses and evictions are published as the "cache.*" metrics of the "sheets" cache.
+ */
+@Component
+public class SheetCache {
+
+    private final Cache<Long, Contents> cache;
+
+    private final int maxSheetCells;
+
+    private final boolean offHeap;
+
+    public SheetCache(@Value("${spreadsheet.cache.max-size-mb:64}") long maxSizeMb,
+                      @Value("${spreadsheet.cache.max-sheet-cells:200000}") int maxSheetCells,
+                      @Value("${spreadsheet.cache.off-heap:false}") boolean offHeap,
+                      MeterRegistry meterRegistry) {
+        this.maxSheetCells = maxSheetCells;
+        this.offHeap = offHeap;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxSizeMb * 1024 * 1024)
+            .weigher((Long sheetId, Contents contents) -> contents.weight)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sheets");
+    }
+
+    /**
+     * Cached cells of a sheet, or null when they are not cached at the sheet version
+     */
+    public Contents get(Sheet sheet) {
+        Contents contents = cache.getIfPresent(sheet.getId());
+        return (contents != null && contents.version == sheet.getVersion()) ? contents : null;
+    }
+
+    /**
+     * Whether the cells of a sheet may be cached: its cell count is known and at most max-sheet-cells
+     */
+    public boolean fits(Sheet sheet) {
+        return sheet.getCellCount() != null && sheet.getCellCount() <= maxSheetCells;
+    }
+
+    /**
+     * Starts collecting the cells of a sheet read by position, in row then column order
+     */
+    public Loader loader(Sheet sheet) {
+        return new Loader(sheet.getId(), sheet.getVersion());
+    }
+
+    public void invalidate(Long sheetId) {
+        cache.invalidate(sheetId);
+    }
+
+    /**
+     * Cells of a sheet at one version
+     */
+    public static class Contents {
+
+        private final long version;
+
+        private final SparseGrid grid;
+
+        private final int weight;
+
+        private Contents(long version, SparseGrid grid) {
+            this.version = version;
+            this.grid = grid;
+            this.weight = (int) Math.min(grid.memoryUsage(), Integer.MAX_VALUE);
+        }
+
+        /**
+         * Passes to the visitor at most max cells of the rows fromRow..toRow and columns fromCol..toCol
+         * @return the number of cells visited
+         */
+        public int read(int fromRow, int toRow, int fromCol, int toCol, int max, CellVisitor visitor) {
+            return grid.forEach(fromRow, toRow, fromCol, toCol, max, visitor);
+        }
+    }
+
+    /**
+     * Collects the cells of a full read of a sheet, and caches them once complete
+     * unless the sheet turned out to be too large
+     */
+    public class Loader implements CellVisitor {
+
+        private final Long sheetId;
+
+        private final long version;
+
+        private SparseGrid grid = new SparseGrid(64, offHeap);
+
+        private Loader(Long sheetId, long version) {
+            this.sheetId = sheetId;
+            this.version = version;
+        }
+
+        @Override
+        public void visit(int row, int column, String value, CellValueType type) {
+            if (grid == null) {
+                return;
+            }
+            if (grid.size() == maxSheetCells) {
+                // Too large to be cached: let the grid go and only keep reading
+                grid = null;
+                return;
+            }
+            grid.put(row, column, value, type);
+        }
+
+        /**
+         * Caches the cells collected
+         * @return the cached cells, or null when the sheet was too large
+         */
+        public Contents complete() {
+            if (grid == null) {
+                return null;
+            }
+            Contents contents = new Contents(version, grid);
+            cache.put(sheetId, contents);
+            return contents;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.osivia.spreadsheet.api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of threads on which the sheets of an export are read and encoded in parallel.
+ *
+ * Each export keeps at most parallelism sheets in flight and takes their results in sheet
+ * order, so that the output is assembled as if the sheets had been encoded one after another.
+ * Every sheet in flight reads its cells with its own database connection.
+ * With a parallelism of 1 the sheets are encoded on the calling thread.
+ */
+@Component
+public class SheetExportExecutor {
+
+    public interface ResultHandler<T> {
+
+        /**
+         * Takes a result, which is owned by the handler from then on
+         */
+        void accept(T result) throws IOException;
+    }
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    public SheetExportExecutor(@Value("${spreadsheet.export.parallelism:4}") int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+        if (this.parallelism > 1) {
+            AtomicInteger threads = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "sheet-export-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            this.executor = Executors.newFixedThreadPool(this.parallelism, threadFactory);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    /**
+     * Runs the tasks and passes their results to the handler in the order of the tasks.
+     * When a task or the handler fails, or the calling thread is interrupted, the tasks in
+     * flight are cancelled, and interrupted if they are running; the results not passed to
+     * the handler, including those of tasks completing despite the interruption, are given
+     * to discard.
+     */
+    public <T> void runInOrder(List<Callable<T>> tasks, ResultHandler<T> handler, Consumer<T> discard) throws IOException {
+        if (executor == null) {
+            for (Callable<T> task : tasks) {
+                handler.accept(call(task));
+            }
+            return;
+        }
+
+        Deque<CompletableFuture<T>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < tasks.size() || !inFlight.isEmpty()) {
+                while (next < tasks.size() && inFlight.size() < parallelism) {
+                    inFlight.add(submit(tasks.get(next++), discard));
+                }
+                // Taken out of the queue only once its result is handed over
+                T result = await(inFlight.peek());
+                inFlight.poll();
+                handler.accept(result);
+            }
+        } finally {
+            // Stop the tasks still running and leave nothing behind, without waiting for them
+            for (CompletableFuture<T> future : inFlight) {
+                if (!future.cancel(true)) {
+                    future.thenAccept(discard);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a task on the pool; cancelling the future it returns interrupts the task,
+     * and a result completed after the cancellation is given to discard
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task, Consumer<T> discard) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> execution = executor.submit(() -> {
+            try {
+                T result = task.call();
+                if (!future.complete(result)) {
+                    discard.accept(result);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
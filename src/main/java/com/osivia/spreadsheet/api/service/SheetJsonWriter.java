@@ -0,0 +1,200 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.osivia.spreadsheet.api.dto.SheetDTO;
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a sheet as the JSON of SheetDTO, streaming its cells from the database
+ * to the output as they are read, so memory does not grow with the sheet size.
+ *
+ * The dense format replaces the cells array by "rows", one array of values per row in
+ * row-major order, where a number stands for a run of empty cells (or of empty rows
+ * at the top level) and trailing empty cells are left out. Values are the cell texts,
+ * except for cells whose type is not the one inferred from their text, written as
+ * {"v": value, "t": type}. It can be encoded as JSON, Smile or CBOR.
+ */
+@Component
+public class SheetJsonWriter {
+
+    public static final String DENSE_JSON_VALUE = "application/vnd.spreadsheet.dense+json";
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final String CBOR_VALUE = "application/cbor";
+
+    private static final List<MediaType> DENSE_TYPES = List.of(
+        MediaType.valueOf(DENSE_JSON_VALUE), MediaType.valueOf(SMILE_VALUE), MediaType.valueOf(CBOR_VALUE));
+
+    private final ObjectMapper objectMapper;
+
+    private final SpreadsheetService spreadsheetService;
+
+    private final JsonFactory smileFactory = new SmileFactory();
+
+    private final JsonFactory cborFactory = new CBORFactory();
+
+    public SheetJsonWriter(ObjectMapper objectMapper, SpreadsheetService spreadsheetService) {
+        this.objectMapper = objectMapper;
+        this.spreadsheetService = spreadsheetService;
+    }
+
+    /**
+     * Dense media type preferred by an Accept header, dense JSON when none is listed
+     */
+    public static MediaType selectDenseType(String accept) {
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            for (MediaType denseType : DENSE_TYPES) {
+                if (mediaType.includes(denseType)) {
+                    return denseType;
+                }
+            }
+        }
+        return DENSE_TYPES.get(0);
+    }
+
+    /**
+     * @param header the sheet without cells, as returned by SpreadsheetService.getSheetHeader
+     */
+    public void write(SheetDTO header, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            writeFields(generator, header);
+
+            generator.writeArrayFieldStart("cells");
+            streamCells(header, (row, column, value, type) -> {
+                generator.writeStartObject();
+                generator.writeNumberField("row", row);
+                generator.writeNumberField("col", column);
+                generator.writeStringField("value", value);
+                generator.writeStringField("type", type.name());
+                generator.writeEndObject();
+            });
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the sheet in the dense format, encoded as given by one of the dense media types
+     */
+    public void writeDense(SheetDTO header, MediaType mediaType, OutputStream out) throws IOException {
+        JsonFactory factory = objectMapper.getFactory();
+        if (mediaType.isCompatibleWith(MediaType.valueOf(SMILE_VALUE))) {
+            factory = smileFactory;
+        } else if (mediaType.isCompatibleWith(MediaType.valueOf(CBOR_VALUE))) {
+            factory = cborFactory;
+        }
+
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            writeFields(generator, header);
+
+            DenseRowEncoder encoder = new DenseRowEncoder(generator);
+            generator.writeArrayFieldStart("rows");
+            streamCells(header, encoder);
+            encoder.finish();
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeFields(JsonGenerator generator, SheetDTO header) throws IOException {
+        // Sheet fields are serialized like the DTO, the cells are written by hand
+        ObjectNode fields = objectMapper.valueToTree(header);
+        fields.remove("cells");
+        Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> field = iterator.next();
+            generator.writeFieldName(field.getKey());
+            objectMapper.writeTree(generator, field.getValue());
+        }
+    }
+
+    private void streamCells(SheetDTO header, CellWriter writer) throws IOException {
+        try {
+            spreadsheetService.streamCells(header.getId(), (row, column, value, type) -> {
+                try {
+                    writer.write(row, column, value, type);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface CellWriter {
+        void write(int row, int column, String value, CellValueType type) throws IOException;
+    }
+
+    /**
+     * Turns cells received in row then column order into run-length encoded row arrays
+     */
+    private static class DenseRowEncoder implements CellWriter {
+
+        private final JsonGenerator generator;
+
+        private int currentRow = -1;
+
+        private int nextColumn;
+
+        DenseRowEncoder(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void write(int row, int column, String value, CellValueType type) throws IOException {
+            if (row != currentRow) {
+                if (currentRow >= 0) {
+                    generator.writeEndArray();
+                }
+                if (row - currentRow > 1) {
+                    generator.writeNumber(row - currentRow - 1);
+                }
+                generator.writeStartArray();
+                currentRow = row;
+                nextColumn = 0;
+            }
+            if (column > nextColumn) {
+                generator.writeNumber(column - nextColumn);
+            }
+            if (type == CellValues.infer(value)) {
+                generator.writeString(value);
+            } else {
+                generator.writeStartObject();
+                generator.writeStringField("v", value);
+                generator.writeStringField("t", type.name());
+                generator.writeEndObject();
+            }
+            nextColumn = column + 1;
+        }
+
+        void finish() throws IOException {
+            if (currentRow >= 0) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
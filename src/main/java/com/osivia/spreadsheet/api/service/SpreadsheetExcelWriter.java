@@ -0,0 +1,251 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.dto.SheetSummaryDTO;
+import com.osivia.spreadsheet.api.dto.SpreadsheetDTO;
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a spreadsheet as an Excel workbook, streaming the cells of each sheet from the
+ * database to the output as they are read.
+ *
+ * The workbook is an SXSSFWorkbook: only the last rows (row-window) of a sheet are kept
+ * in memory, older rows are flushed to a compressed temporary file, so memory does not
+ * grow with the size of the sheets.
+ *
+ * An SXSSFWorkbook is not safe for concurrent use, so with several sheets and a parallel
+ * SheetExportExecutor each sheet is filled in a workbook of its own on the pool and written
+ * to a temporary package. The package of the spreadsheet is then assembled in sheet order
+ * from a workbook holding the same sheets left empty, whose worksheet parts are replaced by
+ * the filled ones, copied compressed as they are. Both ways give the same parts.
+ */
+@Component
+public class SpreadsheetExcelWriter {
+
+    private static final Pattern WORKSHEET_PART = Pattern.compile("xl/worksheets/sheet(\\d+)\\.xml");
+
+    private final SpreadsheetService spreadsheetService;
+
+    private final SheetExportExecutor exportExecutor;
+
+    private final int rowWindow;
+
+    public SpreadsheetExcelWriter(SpreadsheetService spreadsheetService, SheetExportExecutor exportExecutor,
+                                  @Value("${spreadsheet.export.xlsx-row-window:100}") int rowWindow) {
+        this.spreadsheetService = spreadsheetService;
+        this.exportExecutor = exportExecutor;
+        this.rowWindow = rowWindow;
+    }
+
+    /**
+     * @param spreadsheet the spreadsheet with its sheets, as returned by SpreadsheetService.getSpreadsheet
+     */
+    public void write(SpreadsheetDTO spreadsheet, OutputStream out) throws IOException {
+        write(spreadsheet, out, new JobProgress());
+    }
+
+    /**
+     * Same as write, counting the rows read and the bytes written in progress
+     */
+    public void write(SpreadsheetDTO spreadsheet, OutputStream out, JobProgress progress) throws IOException {
+        List<SheetSummaryDTO> sheets = spreadsheet.getSheets();
+        if (exportExecutor.isParallel() && sheets.size() > 1) {
+            writeInParallel(sheets, progress.countBytes(out), progress);
+            return;
+        }
+
+        SXSSFWorkbook workbook = newWorkbook();
+        try {
+            CellStyle dateStyle = createDateStyle(workbook);
+            for (SheetSummaryDTO sheet : sheets) {
+                SXSSFSheet excelSheet = workbook.createSheet(sheet.getName());
+                fillSheet(excelSheet, sheet.getId(), dateStyle, progress);
+            }
+
+            workbook.write(progress.countBytes(out));
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void writeInParallel(List<SheetSummaryDTO> sheets, OutputStream out, JobProgress progress) throws IOException {
+        List<Path> filled = new ArrayList<>();
+        Path skeleton = writeSkeleton(sheets);
+        try {
+            List<Callable<Path>> fills = new ArrayList<>();
+            for (int i = 0; i < sheets.size(); i++) {
+                Long sheetId = sheets.get(i).getId();
+                // Only the first sheet is selected, as in a workbook written in one go
+                boolean selected = i == 0;
+                fills.add(() -> writeSheetPackage(sheetId, selected, progress));
+            }
+            exportExecutor.runInOrder(fills, filled::add, SpreadsheetExcelWriter::deleteQuietly);
+
+            assemble(skeleton, filled, out);
+        } finally {
+            deleteQuietly(skeleton);
+            filled.forEach(SpreadsheetExcelWriter::deleteQuietly);
+        }
+    }
+
+    /**
+     * Package of the workbook with its sheets created but empty
+     */
+    private Path writeSkeleton(List<SheetSummaryDTO> sheets) throws IOException {
+        Path skeleton = Files.createTempFile("spreadsheet-export-", ".xlsx");
+        SXSSFWorkbook workbook = newWorkbook();
+        try (OutputStream out = Files.newOutputStream(skeleton)) {
+            createDateStyle(workbook);
+            for (SheetSummaryDTO sheet : sheets) {
+                workbook.createSheet(sheet.getName());
+            }
+            workbook.write(out);
+            return skeleton;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(skeleton);
+            throw e;
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Package of a workbook holding one filled sheet (run on the export pool)
+     */
+    private Path writeSheetPackage(Long sheetId, boolean selected, JobProgress progress) throws IOException {
+        Path sheetPackage = Files.createTempFile("spreadsheet-export-", ".xlsx");
+        SXSSFWorkbook workbook = newWorkbook();
+        try (OutputStream out = Files.newOutputStream(sheetPackage)) {
+            // Same style as in the skeleton, so that the cells refer to the same style index
+            CellStyle dateStyle = createDateStyle(workbook);
+            SXSSFSheet excelSheet = workbook.createSheet();
+            if (!selected) {
+                // Left out rather than false, as for the sheets after the first one of a workbook written in one go
+                workbook.getXSSFWorkbook().getSheetAt(0).getCTWorksheet().getSheetViews().getSheetViewArray(0).unsetTabSelected();
+            }
+            fillSheet(excelSheet, sheetId, dateStyle, progress);
+            workbook.write(out);
+            return sheetPackage;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(sheetPackage);
+            throw e;
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Copies the parts of the skeleton to the output, the worksheet parts being taken from the filled sheets
+     * (the output stream is not closed)
+     */
+    private static void assemble(Path skeleton, List<Path> filled, OutputStream out) throws IOException {
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        try (ZipFile skeletonZip = new ZipFile(skeleton.toFile())) {
+            Enumeration<ZipArchiveEntry> entries = skeletonZip.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                Matcher worksheet = WORKSHEET_PART.matcher(entry.getName());
+                if (!worksheet.matches()) {
+                    copyRaw(skeletonZip, entry, entry.getName(), zos);
+                    continue;
+                }
+                Path sheetPackage = filled.get(Integer.parseInt(worksheet.group(1)) - 1);
+                try (ZipFile sheetZip = new ZipFile(sheetPackage.toFile())) {
+                    ZipArchiveEntry part = sheetZip.getEntry("xl/worksheets/sheet1.xml");
+                    if (part == null) {
+                        throw new IOException("No worksheet in " + sheetPackage);
+                    }
+                    copyRaw(sheetZip, part, entry.getName(), zos);
+                }
+            }
+        }
+        zos.finish();
+        zos.flush();
+    }
+
+    private static void copyRaw(ZipFile zip, ZipArchiveEntry from, String name, ZipArchiveOutputStream zos) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(from.getMethod());
+        entry.setCrc(from.getCrc());
+        entry.setSize(from.getSize());
+        entry.setCompressedSize(from.getCompressedSize());
+        entry.setTime(from.getTime());
+        try (InputStream data = zip.getRawInputStream(from)) {
+            zos.addRawArchiveEntry(entry, data);
+        }
+    }
+
+    private SXSSFWorkbook newWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    private static CellStyle createDateStyle(SXSSFWorkbook workbook) {
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+        return dateStyle;
+    }
+
+    private void fillSheet(SXSSFSheet excelSheet, Long sheetId, CellStyle dateStyle, JobProgress progress) {
+        // Cells come in row then column order, as SXSSF requires
+        Row[] row = {null};
+        spreadsheetService.exportCells(sheetId, progress.countRows((rowIndex, column, value, type) -> {
+            if (row[0] == null || row[0].getRowNum() != rowIndex) {
+                row[0] = excelSheet.createRow(rowIndex);
+            }
+            setCellValue(row[0].createCell(column), value, type, dateStyle);
+        }));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete: " + path + " - " + e.getMessage());
+        }
+    }
+
+    private static void setCellValue(Cell excelCell, String value, CellValueType type, CellStyle dateStyle) {
+        switch (type) {
+            case NUMBER:
+                excelCell.setCellValue(Double.parseDouble(value));
+                break;
+            case BOOLEAN:
+                excelCell.setCellValue(Boolean.parseBoolean(value.toLowerCase()));
+                break;
+            case DATE:
+                excelCell.setCellValue(CellValues.dateValue(value, CellValueType.DATE));
+                excelCell.setCellStyle(dateStyle);
+                break;
+            default:
+                excelCell.setCellValue(value);
+        }
+    }
+}
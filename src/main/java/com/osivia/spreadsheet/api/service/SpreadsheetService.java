@@ -1,7 +1,13 @@
 package com.osivia.spreadsheet.api.service;
 
 
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
 import com.osivia.spreadsheet.api.dto.CellDTO;
+import com.osivia.spreadsheet.api.dto.CellPageDTO;
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
 import com.osivia.spreadsheet.api.dto.SheetDTO;
 import com.osivia.spreadsheet.api.dto.SheetSummaryDTO;
 import com.osivia.spreadsheet.api.dto.SpreadsheetDTO;
@@ -9,9 +15,16 @@ import com.osivia.spreadsheet.api.entity.*;
 import com.osivia.spreadsheet.api.exception.ResourceNotFoundException;
 import com.osivia.spreadsheet.api.exception.UnauthorizedException;
 import com.osivia.spreadsheet.api.repository.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.osivia.spreadsheet.api.security.SpreadsheetAuthorization;
+import com.osivia.spreadsheet.api.storage.CellStats;
+import com.osivia.spreadsheet.api.storage.CellStorage;
+import com.osivia.spreadsheet.api.storage.CellStorageRegistry;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+import com.osivia.spreadsheet.api.storage.SparseGrid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,10 +34,14 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,22 +54,31 @@ public class SpreadsheetService {
 
     private final  SheetRepository sheetRepository;
     
-    private final  CellRepository cellRepository;
+    private final  CellStorageRegistry cellStorages;
 
     private final  UserRepository userRepository;
     
     private final  SpreadsheetPermissionRepository permissionRepository;
     
+    private final  SheetCache sheetCache;
+    
+    private final  SpreadsheetAuthorization authorization;
+    
 
     @Value("${media.upload.path}")
     private String uploadPath;
 
-    public SpreadsheetService(SpreadsheetRepository spreadsheetRepository, SheetRepository sheetRepository, CellRepository cellRepository, UserRepository userRepository, SpreadsheetPermissionRepository permissionRepository, MediaRepository mediaRepository) {
+    @Value("${spreadsheet.cells.max-page-size:10000}")
+    private int maxPageSize;
+
+    public SpreadsheetService(SpreadsheetRepository spreadsheetRepository, SheetRepository sheetRepository, CellStorageRegistry cellStorages, UserRepository userRepository, SpreadsheetPermissionRepository permissionRepository, MediaRepository mediaRepository, SheetCache sheetCache, SpreadsheetAuthorization authorization) {
         this.spreadsheetRepository = spreadsheetRepository;
         this.sheetRepository = sheetRepository;
-        this.cellRepository = cellRepository;
+        this.cellStorages = cellStorages;
         this.userRepository = userRepository;
         this.permissionRepository = permissionRepository;
+        this.sheetCache = sheetCache;
+        this.authorization = authorization;
     }
 
     public SpreadsheetDTO createSpreadsheet(String name, String description, String username) {
@@ -68,6 +94,7 @@ public class SpreadsheetService {
         Sheet sheet = new Sheet();
         sheet.setName("Sheet1");
         sheet.setOrderIndex(0);
+        sheet.setStorageMode(cellStorages.getDefaultMode());
         sheet.setSpreadsheet(spreadsheet);
         spreadsheet.getSheets().add(sheet);
         
@@ -79,7 +106,7 @@ public class SpreadsheetService {
         Spreadsheet spreadsheet = spreadsheetRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
         
-        checkPermission(spreadsheet, username, PermissionType.VIEW);
+        authorization.check(spreadsheet, username, PermissionType.VIEW);
         return convertToDTO(spreadsheet, username);
     }
     
@@ -87,16 +114,16 @@ public class SpreadsheetService {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new ResourceNotFoundException("User not found"));
         
-        List<Spreadsheet> owned = spreadsheetRepository.findByOwner(user);
-        List<Spreadsheet> shared = permissionRepository.findByUser(user).stream()
-            .map(SpreadsheetPermission::getSpreadsheet)
-            .collect(Collectors.toList());
-        
-        Set<Spreadsheet> all = new HashSet<>(owned);
-        all.addAll(shared);
+        // One query for the spreadsheets, one for all their sheets
+        Map<Long, List<SheetSummaryDTO>> sheets = new HashMap<>();
+        for (SheetRepository.SheetSummary sheet : sheetRepository.findSummariesVisibleTo(user.getId())) {
+            sheets.computeIfAbsent(sheet.getSpreadsheetId(), id -> new ArrayList<>())
+                .add(new SheetSummaryDTO(sheet.getId(), sheet.getName(), sheet.getOrderIndex(), sheet.getMaxRow(),
+                    sheet.getMaxColumn(), sheet.getCellCount(), sheet.getByteSize()));
+        }
         
-        return all.stream()
-            .map(s -> convertToDTO(s, username))
+        return spreadsheetRepository.findSummariesVisibleTo(user.getId()).stream()
+            .map(summary -> convertToDTO(summary, sheets.getOrDefault(summary.getId(), new ArrayList<>()), username))
             .collect(Collectors.toList());
     }
     
@@ -114,56 +141,281 @@ public class SpreadsheetService {
         }
         
         spreadsheetRepository.delete(spreadsheet);
+        authorization.evictSpreadsheet(id);
     }
     
-    public SheetDTO createSheet(Long spreadsheetId, String name, String username) {
+    public SheetDTO createSheet(Long spreadsheetId, String name, CellStorageMode storageMode, String username) {
         Spreadsheet spreadsheet = spreadsheetRepository.findById(spreadsheetId)
             .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
         
-        checkPermission(spreadsheet, username, PermissionType.EDIT);
+        authorization.check(spreadsheet, username, PermissionType.EDIT);
         
         Sheet sheet = new Sheet();
         sheet.setName(name);
         sheet.setSpreadsheet(spreadsheet);
         sheet.setOrderIndex(spreadsheet.getSheets().size());
+        sheet.setStorageMode(storageMode != null ? storageMode : cellStorages.getDefaultMode());
         
         Sheet saved = sheetRepository.save(sheet);
+        touch(spreadsheet);
         return convertToSheetDTO(saved);
     }
     
-    public SheetDTO getSheet(Long sheetId, String username) {
+    /**
+     * Sheet without its cells, which are read with {@link #streamCells(Long, CellVisitor)}
+     */
+    public SheetDTO getSheetHeader(Long sheetId, String username) {
         Sheet sheet = sheetRepository.findById(sheetId)
             .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
         
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.VIEW);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.VIEW);
         
-        return convertToSheetDTO(sheet);
+        return convertToSheetHeader(sheet);
     }
     
-    public void updateCells(Long sheetId, List<CellDTO> cellUpdates, String username) {
+    /**
+     * Passes every cell of a sheet to the visitor in row then column order, from the sheet cache
+     * or through a cursor; sheets small enough to be cached are cached by the read.
+     * Permissions must have been checked by the caller.
+     */
+    @Transactional(readOnly = true)
+    public void streamCells(Long sheetId, CellVisitor visitor) {
+        Sheet sheet = sheetRepository.findById(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+        
+        forEachCell(sheet, visitor);
+    }
+    
+    /**
+     * Passes the cells of a range of a sheet to the visitor in row then column order,
+     * reading them through a cursor. Permissions must have been checked by the caller.
+     */
+    @Transactional(readOnly = true)
+    public void streamCells(Long sheetId, CellRange range, CellVisitor visitor) {
+        Sheet sheet = sheetRepository.findById(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+        
+        readCells(sheet, sheetCache.get(sheet), RowMap.decode(sheet.getRowMap()), cellStorages.forSheet(sheet),
+            range.getStartRow(), range.getEndRow(), range.getStartColumn(), range.getEndColumn(), Integer.MAX_VALUE, visitor);
+    }
+    
+    /**
+     * Highest column of a sheet holding a cell, or -1, from its statistics when they are known
+     */
+    @Transactional(readOnly = true)
+    public int findMaxColumn(Long sheetId) {
         Sheet sheet = sheetRepository.findById(sheetId)
             .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
         
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        Integer maxColumn = (sheet.getMaxColumn() != null) ? sheet.getMaxColumn() : cellStorages.forSheet(sheet).findMaxColumn(sheet);
+        return (maxColumn != null) ? maxColumn : -1;
+    }
+    
+    /**
+     * Replaces the cells of a sheet by the rows of a CSV read from a stream, written in batches as they are read.
+     * When a range is given only its cells are replaced, the CSV is placed at its top left corner and must fit in it.
+     * @return the number of CSV rows read
+     */
+    public int importCsv(Long sheetId, InputStream csv, char delimiter, CellRange range, String username) throws IOException {
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+        
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        
+        CellStorage storage = cellStorages.forSheet(sheet);
+        RowMap rowMap;
+        if (range == null) {
+            // Rows of the new cells get their position as row id again
+            storage.deleteAll(sheet);
+            rowMap = RowMap.identity();
+            sheet.setCellCount(0L);
+            sheet.setByteSize(0L);
+            sheet.setMaxRow(-1);
+            sheet.setMaxColumn(-1);
+            range = CellRange.all();
+        } else {
+            rowMap = RowMap.decode(sheet.getRowMap());
+            ensureStats(sheet, rowMap, storage);
+            deleteRange(sheet, rowMap, storage, range);
+        }
         
+        // The reader is not closed, the stream belongs to the caller
+        CSVReader reader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8)))
+            .withCSVParser(new CSVParserBuilder().withSeparator(delimiter).build())
+            .build();
+        CellStats written = new CellStats();
+        int rows = 0;
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            String[] values;
+            while ((values = reader.readNext()) != null) {
+                int position = range.getStartRow() + rows;
+                int rowId = -1;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] == null || values[i].isEmpty()) {
+                        continue;
+                    }
+                    int column = range.getStartColumn() + i;
+                    if (position > range.getEndRow() || column > range.getEndColumn()) {
+                        throw new IllegalArgumentException("CSV value at line " + (rows + 1) + ", field " + (i + 1) + " is out of the range");
+                    }
+                    if (rowId < 0) {
+                        rowId = rowMap.rowIdFor(position);
+                    }
+                    writer.add(rowId, column, values[i]);
+                    written.visit(position, column, values[i], null);
+                }
+                rows++;
+            }
+        } catch (CsvValidationException e) {
+            throw new IllegalArgumentException("Invalid CSV: " + e.getMessage());
+        }
+        
+        sheet.setRowMap(rowMap.encode());
+        written.addTo(sheet);
+        touch(sheet);
+        return rows;
+    }
+    
+    /**
+     * Deletes the cells of a range and updates the statistics of the sheet
+     */
+    private void deleteRange(Sheet sheet, RowMap rowMap, CellStorage storage, CellRange range) {
+        List<Cell> cells = new ArrayList<>();
+        CellStats deleted = new CellStats();
+        rowMap.forEachSegment(range.getStartRow(), range.getEndRow(), (position, firstRowId, length) ->
+            storage.scan(sheet, firstRowId, firstRowId + length - 1, range.getStartColumn(), range.getEndColumn(), Integer.MAX_VALUE,
+                (rowId, column, value, type) -> {
+                    Cell cell = new Cell();
+                    cell.setRowIndex(rowId);
+                    cell.setColumnIndex(column);
+                    cells.add(cell);
+                    deleted.visit(position + (rowId - firstRowId), column, value, type);
+                }));
+        if (cells.isEmpty()) {
+            return;
+        }
+        
+        storage.deleteCells(sheet, cells);
+        deleted.removeFrom(sheet);
+        if (deleted.getMaxRow() >= sheet.getMaxRow() || deleted.getMaxColumn() >= sheet.getMaxColumn()) {
+            refreshExtent(sheet, rowMap, storage);
+        }
+    }
+    
+    /**
+     * Reads one page of the cells of a range, in row then column order.
+     * When afterRow and afterCol are given the page starts after that cell (keyset pagination).
+     */
+    public CellPageDTO getCells(Long sheetId, CellRange range, Integer afterRow, Integer afterCol, int limit, String username) {
+        if ((afterRow == null) != (afterCol == null)) {
+            throw new IllegalArgumentException("afterRow and afterCol must be given together");
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        
+        Sheet sheet = sheetRepository.findById(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+        
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.VIEW);
+        
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        CellStorage storage = cellStorages.forSheet(sheet);
+        SheetCache.Contents cached = loadCached(sheet, rowMap, storage);
+        
+        // Read one cell more than the limit to know whether another page follows
+        List<CellDTO> cells = new ArrayList<>();
+        CellVisitor collector = (row, column, value, type) -> cells.add(new CellDTO(row, column, value, type));
+        int max = limit + 1;
+        int fromRow = range.getStartRow();
+        if (afterRow != null && afterRow >= range.getStartRow()) {
+            // End of the row of the keyset, then the following rows
+            if (afterRow <= range.getEndRow() && afterCol < range.getEndColumn()) {
+                readCells(sheet, cached, rowMap, storage, afterRow, afterRow,
+                    Math.max(range.getStartColumn(), afterCol + 1), range.getEndColumn(), max, collector);
+            }
+            fromRow = (int) Math.min((long) afterRow + 1, Integer.MAX_VALUE);
+        }
+        if (fromRow <= range.getEndRow()) {
+            readCells(sheet, cached, rowMap, storage, fromRow, range.getEndRow(),
+                range.getStartColumn(), range.getEndColumn(), max - cells.size(), collector);
+        }
+        
+        CellPageDTO page = new CellPageDTO();
+        if (cells.size() > limit) {
+            cells.remove(limit);
+            CellDTO last = cells.get(limit - 1);
+            page.setHasMore(true);
+            page.setNextAfterRow(last.getRow());
+            page.setNextAfterCol(last.getCol());
+        }
+        page.setCells(cells);
+        return page;
+    }
+    
+    public void updateCells(Long sheetId, List<CellDTO> cellUpdates, String username) {
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+        
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        CellStorage storage = cellStorages.forSheet(sheet);
+        ensureStats(sheet, rowMap, storage);
+        
+        // Keep the last update of each coordinate, then split writes and deletes
+        Map<Long, Cell> upserts = new LinkedHashMap<>();
+        Map<Long, Cell> deletes = new LinkedHashMap<>();
         for (CellDTO cellDTO : cellUpdates) {
-            Cell cell = cellRepository.findBySheetAndRowIndexAndColumnIndex(
-                sheet, cellDTO.getRow(), cellDTO.getCol()
-            ).orElse(new Cell());
-            
-            cell.setSheet(sheet);
-            cell.setRowIndex(cellDTO.getRow());
+            checkPosition("row", cellDTO.getRow());
+            checkPosition("col", cellDTO.getCol());
+            Cell cell = new Cell();
+            cell.setRowIndex(rowMap.rowIdFor(cellDTO.getRow()));
             cell.setColumnIndex(cellDTO.getCol());
-            cell.setValue(cellDTO.getValue());
             
+            Long key = SparseGrid.key(cellDTO.getRow(), cellDTO.getCol());
             if (cellDTO.getValue() == null || cellDTO.getValue().isEmpty()) {
-                if (cell.getId() != null) {
-                    cellRepository.delete(cell);
-                }
+                upserts.remove(key);
+                deletes.put(key, cell);
             } else {
-                cellRepository.save(cell);
+                CellValueType type = cellDTO.getType();
+                if (type != null) {
+                    CellValues.check(cellDTO.getValue(), type);
+                } else {
+                    type = CellValues.infer(cellDTO.getValue());
+                }
+                cell.setTypedValue(cellDTO.getValue(), type);
+                deletes.remove(key);
+                upserts.put(key, cell);
             }
         }
+        
+        sheet.setRowMap(rowMap.encode());
+        
+        // Statistics change by the values replaced or deleted, and by the new ones
+        Set<Long> positions = new HashSet<>(upserts.keySet());
+        positions.addAll(deletes.keySet());
+        Map<Long, String> previous = readValues(sheet, rowMap, storage, positions);
+        CellStats deleted = new CellStats();
+        CellStats replaced = new CellStats();
+        CellStats written = new CellStats();
+        deletes.keySet().forEach(key -> visitPrevious(previous, key, deleted));
+        upserts.forEach((key, cell) -> {
+            visitPrevious(previous, key, replaced);
+            written.visit(SparseGrid.row(key), cell.getColumnIndex(), cell.getValue(), cell.getValueType());
+        });
+        
+        storage.deleteCells(sheet, deletes.values());
+        storage.upsertCells(sheet, upserts.values());
+        
+        deleted.removeFrom(sheet);
+        replaced.removeFrom(sheet);
+        written.addTo(sheet);
+        if (deleted.getCount() > 0
+                && (deleted.getMaxRow() >= sheet.getMaxRow() || deleted.getMaxColumn() >= sheet.getMaxColumn())) {
+            refreshExtent(sheet, rowMap, storage);
+        }
+        touch(sheet);
     }
     
     public void grantPermission(Long spreadsheetId, String ownerUsername, 
@@ -172,7 +424,7 @@ public class SpreadsheetService {
             .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
         
         if (!spreadsheet.getOwner().getUsername().equals(ownerUsername)) {
-            checkPermission(spreadsheet, ownerUsername, PermissionType.ADMIN);
+            authorization.check(spreadsheet, ownerUsername, PermissionType.ADMIN);
         }
         
         User targetUser = userRepository.findByUsername(targetUsername)
@@ -191,6 +443,8 @@ public class SpreadsheetService {
         permission.setPermissionType(permissionType);
         
         permissionRepository.save(permission);
+        authorization.evict(spreadsheet.getId(), targetUser);
+        touch(spreadsheet);
     }
     
     public void revokePermission(Long spreadsheetId, String ownerUsername, String targetUsername) {
@@ -206,72 +460,112 @@ public class SpreadsheetService {
         
         permissionRepository.findBySpreadsheetAndUser(spreadsheet, targetUser)
             .ifPresent(permissionRepository::delete);
+        authorization.evict(spreadsheet.getId(), targetUser);
+        touch(spreadsheet);
     }
     
-    public byte[] exportToExcel(Long spreadsheetId, String username) throws IOException {
-        Spreadsheet spreadsheet = spreadsheetRepository.findById(spreadsheetId)
-            .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
-        
-        checkPermission(spreadsheet, username, PermissionType.VIEW);
-        
-        try (Workbook workbook = new XSSFWorkbook()) {
-            for (Sheet sheetEntity : spreadsheet.getSheets()) {
-                org.apache.poi.ss.usermodel.Sheet excelSheet = workbook.createSheet(sheetEntity.getName());
-                
-                List<Cell> cells = cellRepository.findBySheetOrdered(sheetEntity);
-                
-                for (Cell cellEntity : cells) {
-                    Row row = excelSheet.getRow(cellEntity.getRowIndex());
-                    if (row == null) {
-                        row = excelSheet.createRow(cellEntity.getRowIndex());
-                    }
-                    
-                    org.apache.poi.ss.usermodel.Cell excelCell = row.createCell(cellEntity.getColumnIndex());
-                    excelCell.setCellValue(cellEntity.getValue());
-                }
-            }
-            
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            workbook.write(bos);
-            return bos.toByteArray();
-        }
+    public SpreadsheetDTO importFromExcel(MultipartFile file, String username) throws IOException {
+        return importFromExcel(file, file.getOriginalFilename(), username, new JobProgress());
     }
     
-    public SpreadsheetDTO importFromExcel(MultipartFile file, String username) throws IOException {
+    /**
+     * Imports a workbook from an upload or from a file, reporting the rows and bytes read to progress
+     */
+    public SpreadsheetDTO importFromExcel(InputStreamSource file, String filename, String username, JobProgress progress) throws IOException {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new ResourceNotFoundException("User not found"));
         
         Spreadsheet spreadsheet = new Spreadsheet();
-        spreadsheet.setName(file.getOriginalFilename());
+        spreadsheet.setName(filename);
         spreadsheet.setOwner(user);
+        Spreadsheet saved = spreadsheetRepository.save(spreadsheet);
         
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
+        FileMagic magic;
+        try (InputStream in = FileMagic.prepareToCheckMagic(file.getInputStream())) {
+            magic = FileMagic.valueOf(in);
+        }
+        if (magic == FileMagic.OOXML) {
+            importXlsx(file, saved, progress);
+        } else {
+            importWorkbook(file, saved, progress);
+        }
+        
+        return convertToDTO(saved, username);
+    }
+    
+    /**
+     * Imports an xlsx file with the event API, streaming the cells of each sheet into its storage
+     */
+    private void importXlsx(InputStreamSource file, Spreadsheet spreadsheet, JobProgress progress) throws IOException {
+        // The package is read from a file rather than unzipped in memory
+        if (file instanceof Resource && ((Resource) file).isFile()) {
+            importXlsx(((Resource) file).getFile(), spreadsheet, progress);
+            return;
+        }
+        Path temp = Files.createTempFile("import", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            importXlsx(temp.toFile(), spreadsheet, progress);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private void importXlsx(File file, Spreadsheet spreadsheet, JobProgress progress) throws IOException {
+        try (XlsxSheetReader reader = new XlsxSheetReader(file, progress)) {
+            for (int i = 0; reader.nextSheet(); i++) {
+                Sheet sheet = createImportedSheet(spreadsheet, reader.getSheetName(), i);
+                
+                CellStats written = new CellStats();
+                try (CellWriter writer = cellStorages.forSheet(sheet).openWriter(sheet)) {
+                    reader.readSheet(progress.countRows((row, column, value, type) -> {
+                        writer.add(row, column, value, type);
+                        written.visit(row, column, value, type);
+                    }));
+                }
+                written.addTo(sheet);
+            }
+        }
+    }
+    
+    /**
+     * Imports a workbook of another format (xls) through the usermodel, which loads it whole
+     */
+    private void importWorkbook(InputStreamSource file, Spreadsheet spreadsheet, JobProgress progress) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(progress.countBytes(file.getInputStream()))) {
             for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
                 org.apache.poi.ss.usermodel.Sheet excelSheet = workbook.getSheetAt(i);
+                Sheet sheet = createImportedSheet(spreadsheet, excelSheet.getSheetName(), i);
                 
-                Sheet sheet = new Sheet();
-                sheet.setName(excelSheet.getSheetName());
-                sheet.setOrderIndex(i);
-                sheet.setSpreadsheet(spreadsheet);
-                spreadsheet.getSheets().add(sheet);
-                
-                for (Row row : excelSheet) {
-                    for (org.apache.poi.ss.usermodel.Cell excelCell : row) {
-                        if (excelCell.getCellType() != CellType.BLANK) {
-                            Cell cell = new Cell();
-                            cell.setSheet(sheet);
-                            cell.setRowIndex(row.getRowNum());
-                            cell.setColumnIndex(excelCell.getColumnIndex());
-                            cell.setValue(getCellValueAsString(excelCell));
-                            sheet.getCells().add(cell);
+                // Stream the cells straight into the storage instead of cascading the entity graph
+                CellStats written = new CellStats();
+                try (CellWriter writer = cellStorages.forSheet(sheet).openWriter(sheet)) {
+                    for (Row row : excelSheet) {
+                        progress.addRows(1);
+                        for (org.apache.poi.ss.usermodel.Cell excelCell : row) {
+                            if (excelCell.getCellType() != CellType.BLANK) {
+                                String value = getCellValueAsString(excelCell);
+                                writer.add(row.getRowNum(), excelCell.getColumnIndex(), value, getCellValueType(excelCell, value));
+                                written.visit(row.getRowNum(), excelCell.getColumnIndex(), value, null);
+                            }
                         }
                     }
                 }
+                written.addTo(sheet);
             }
         }
-        
-        Spreadsheet saved = spreadsheetRepository.save(spreadsheet);
-        return convertToDTO(saved, username);
+    }
+    
+    private Sheet createImportedSheet(Spreadsheet spreadsheet, String name, int orderIndex) {
+        Sheet sheet = new Sheet();
+        sheet.setName(name);
+        sheet.setOrderIndex(orderIndex);
+        sheet.setStorageMode(cellStorages.getDefaultMode());
+        sheet.setSpreadsheet(spreadsheet);
+        spreadsheet.getSheets().add(sheet);
+        return sheetRepository.save(sheet);
     }
     
     private String getCellValueAsString(org.apache.poi.ss.usermodel.Cell cell) {
@@ -280,7 +574,7 @@ public class SpreadsheetService {
                 return cell.getStringCellValue();
             case NUMERIC:
                 if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
+                    return CellValues.formatDate(cell.getLocalDateTimeCellValue());
                 }
                 return String.valueOf(cell.getNumericCellValue());
             case BOOLEAN:
@@ -296,39 +590,22 @@ public class SpreadsheetService {
         }
     }
     
-    private void checkPermission(Spreadsheet spreadsheet, String username, PermissionType requiredPermission) {
-        if (spreadsheet.getOwner().getUsername().equals(username)) {
-            return; // Owner has all permissions
-        }
-        
-        User user = userRepository.findByUsername(username)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        
-        Optional<SpreadsheetPermission> permission = permissionRepository.findBySpreadsheetAndUser(spreadsheet, user);
-        
-        if (permission.isEmpty()) {
-            throw new UnauthorizedException("No permission to access this spreadsheet");
-        }
-        
-        PermissionType userPermission = permission.get().getPermissionType();
-        
-        if (requiredPermission == PermissionType.VIEW) {
-            return; // Any permission allows viewing
-        }
-        
-        if (requiredPermission == PermissionType.EDIT && userPermission == PermissionType.VIEW) {
-            throw new UnauthorizedException("No edit permission for this spreadsheet");
-        }
-        
-        if (requiredPermission == PermissionType.ADMIN && userPermission != PermissionType.ADMIN) {
-            throw new UnauthorizedException("Admin permission required");
+    /**
+     * Type matching the native Excel type of a cell
+     */
+    private CellValueType getCellValueType(org.apache.poi.ss.usermodel.Cell cell, String value) {
+        switch (cell.getCellType()) {
+            case NUMERIC:
+                return DateUtil.isCellDateFormatted(cell) ? CellValueType.DATE : CellValueType.NUMBER;
+            case BOOLEAN:
+                return CellValueType.BOOLEAN;
+            case FORMULA:
+                return CellValues.infer(value);
+            default:
+                return CellValueType.STRING;
         }
     }
     
-    public SpreadsheetPermissionRepository getPermissionRepository() {
-        return permissionRepository;
-    }
-    
     private SpreadsheetDTO convertToDTO(Spreadsheet spreadsheet, String username) {
         SpreadsheetDTO dto = new SpreadsheetDTO();
         dto.setId(spreadsheet.getId());
@@ -336,24 +613,49 @@ public class SpreadsheetService {
         dto.setDescription(spreadsheet.getDescription());
         dto.setOwnerUsername(spreadsheet.getOwner().getUsername());
         dto.setMediaCount(spreadsheet.getMediaFiles().size());
+        dto.setVersion(spreadsheet.getVersion());
         dto.setCreatedAt(spreadsheet.getCreatedAt());
         dto.setUpdatedAt(spreadsheet.getUpdatedAt());
         
         dto.setSheets(spreadsheet.getSheets().stream()
-            .map(s -> new SheetSummaryDTO(s.getId(), s.getName(), s.getOrderIndex()))
+            .map(s -> new SheetSummaryDTO(s.getId(), s.getName(), s.getOrderIndex(), s.getMaxRow(), s.getMaxColumn(),
+                s.getCellCount(), s.getByteSize()))
             .collect(Collectors.toList()));
         
         // Set user's permission level
-        if (spreadsheet.getOwner().getUsername().equals(username)) {
+        dto.setUserPermission(authorization.getAccessLevel(spreadsheet.getId(), username));
+        
+        return dto;
+    }
+    
+    private SpreadsheetDTO convertToDTO(SpreadsheetRepository.SpreadsheetSummary summary, List<SheetSummaryDTO> sheets, String username) {
+        SpreadsheetDTO dto = new SpreadsheetDTO();
+        dto.setId(summary.getId());
+        dto.setName(summary.getName());
+        dto.setDescription(summary.getDescription());
+        dto.setOwnerUsername(summary.getOwnerUsername());
+        dto.setMediaCount(summary.getMediaCount().intValue());
+        dto.setVersion(summary.getVersion() != null ? summary.getVersion() : 0L);
+        dto.setCreatedAt(summary.getCreatedAt());
+        dto.setUpdatedAt(summary.getUpdatedAt());
+        dto.setSheets(sheets);
+        
+        if (summary.getOwnerUsername().equals(username)) {
             dto.setUserPermission("OWNER");
-        } else {
-            userRepository.findByUsername(username).flatMap(user -> permissionRepository.findBySpreadsheetAndUser(spreadsheet, user)).ifPresent(p -> dto.setUserPermission(p.getPermissionType().toString()));
+        } else if (summary.getPermissionType() != null) {
+            dto.setUserPermission(summary.getPermissionType().toString());
         }
         
         return dto;
     }
     
     private SheetDTO convertToSheetDTO(Sheet sheet) {
+        SheetDTO dto = convertToSheetHeader(sheet);
+        dto.setCells(findCellsInOrder(sheet));
+        return dto;
+    }
+    
+    private SheetDTO convertToSheetHeader(Sheet sheet) {
         SheetDTO dto = new SheetDTO();
         dto.setId(sheet.getId());
         dto.setName(sheet.getName());
@@ -361,15 +663,132 @@ public class SpreadsheetService {
         dto.setOrderIndex(sheet.getOrderIndex());
         dto.setRowCount(sheet.getRowCount());
         dto.setColumnCount(sheet.getColumnCount());
+        dto.setMaxRow(sheet.getMaxRow());
+        dto.setMaxColumn(sheet.getMaxColumn());
+        dto.setCellCount(sheet.getCellCount());
+        dto.setByteSize(sheet.getByteSize());
+        dto.setStorageMode(sheet.getStorageMode());
+        dto.setVersion(sheet.getVersion());
         dto.setCreatedAt(sheet.getCreatedAt());
         dto.setUpdatedAt(sheet.getUpdatedAt());
+        return dto;
+    }
+    
+    /**
+     * Reads the cells of a sheet sorted by position, with row ids resolved through the row map
+     */
+    public List<CellDTO> findCellsInOrder(Sheet sheet) {
+        List<CellDTO> cells = new ArrayList<>();
+        forEachCell(sheet, (row, column, value, type) -> cells.add(new CellDTO(row, column, value, type)));
+        return cells;
+    }
+    
+    /**
+     * Passes the cells of a sheet to the visitor by position, in row then column order.
+     * Read from the sheet cache when it holds the sheet. Otherwise read from the storage, and
+     * put in the cache on the way when the cell count of the sheet is known to fit in it.
+     */
+    public void forEachCell(Sheet sheet, CellVisitor visitor) {
+        SheetCache.Contents cached = sheetCache.get(sheet);
+        if (cached != null || !sheetCache.fits(sheet)) {
+            readAllCells(sheet, cached, visitor);
+            return;
+        }
         
-        List<Cell> cells = cellRepository.findBySheetOrdered(sheet);
-        dto.setCells(cells.stream()
-            .map(c -> new CellDTO(c.getRowIndex(), c.getColumnIndex(), c.getValue()))
-            .collect(Collectors.toList()));
+        SheetCache.Loader loader = sheetCache.loader(sheet);
+        readAllCells(sheet, null, (row, column, value, type) -> {
+            loader.visit(row, column, value, type);
+            visitor.visit(row, column, value, type);
+        });
+        loader.complete();
+    }
+    
+    /**
+     * Passes the cells of a sheet to the visitor by position, in row then column order, for an export:
+     * read from the sheet cache when it holds the sheet, otherwise streamed from the storage without
+     * filling the cache, so that exports do not buffer the sheets they read.
+     * Permissions must have been checked by the caller.
+     */
+    @Transactional(readOnly = true)
+    public void exportCells(Long sheetId, CellVisitor visitor) {
+        Sheet sheet = sheetRepository.findById(sheetId)
+            .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
         
-        return dto;
+        readAllCells(sheet, sheetCache.get(sheet), visitor);
+    }
+    
+    private void readAllCells(Sheet sheet, SheetCache.Contents cached, CellVisitor visitor) {
+        CellRange all = CellRange.all();
+        readCells(sheet, cached, RowMap.decode(sheet.getRowMap()), cellStorages.forSheet(sheet), all.getStartRow(),
+            all.getEndRow(), all.getStartColumn(), all.getEndColumn(), Integer.MAX_VALUE, visitor);
+    }
+    
+    /**
+     * Cached cells of a sheet. On a miss, a sheet whose cell count is known to fit in the cache
+     * is read in full and cached; larger sheets are not cached and null is returned.
+     */
+    private SheetCache.Contents loadCached(Sheet sheet, RowMap rowMap, CellStorage storage) {
+        SheetCache.Contents cached = sheetCache.get(sheet);
+        if (cached != null || !sheetCache.fits(sheet)) {
+            return cached;
+        }
+        
+        CellRange all = CellRange.all();
+        SheetCache.Loader loader = sheetCache.loader(sheet);
+        readCells(sheet, null, rowMap, storage, all.getStartRow(), all.getEndRow(),
+            all.getStartColumn(), all.getEndColumn(), Integer.MAX_VALUE, loader);
+        return loader.complete();
+    }
+    
+    /**
+     * Passes to the visitor at most max cells (all of them for Integer.MAX_VALUE) of the rows fromRow..toRow and columns fromCol..toCol,
+     * from the cached cells when given, or else reading each segment of consecutive row ids with one scan
+     * @return the number of cells visited
+     */
+    private int readCells(Sheet sheet, SheetCache.Contents cached, RowMap rowMap, CellStorage storage, int fromRow, int toRow,
+                          int fromCol, int toCol, int max, CellVisitor visitor) {
+        if (cached != null) {
+            return cached.read(fromRow, toRow, fromCol, toCol, max, visitor);
+        }
+        
+        // Unbounded reads stay unbounded on every segment, so that storages stream them through a cursor
+        boolean unbounded = max == Integer.MAX_VALUE;
+        int[] read = {0};
+        rowMap.forEachSegment(fromRow, toRow, (position, firstRowId, length) -> {
+            if (unbounded || read[0] < max) {
+                read[0] += storage.scan(sheet, firstRowId, firstRowId + length - 1, fromCol, toCol,
+                    unbounded ? Integer.MAX_VALUE : max - read[0],
+                    (rowId, column, value, type) -> visitor.visit(position + (rowId - firstRowId), column, value, type));
+            }
+        });
+        return read[0];
+    }
+    
+    /**
+     * Rejects a missing or negative row or column: storages rely on cells never having a negative position
+     */
+    private static void checkPosition(String name, Integer index) {
+        if (index == null || index < 0) {
+            throw new IllegalArgumentException(name + " must be given and not negative");
+        }
+    }
+    
+    /**
+     * Moves the version of a sheet forward after a change of its cells or rows, and the one of
+     * its spreadsheet, whose representation holds the statistics of its sheets
+     */
+    private void touch(Sheet sheet) {
+        LocalDateTime now = LocalDateTime.now();
+        sheetRepository.incrementVersion(sheet.getId(), now);
+        spreadsheetRepository.incrementVersion(sheet.getSpreadsheet().getId(), now);
+        sheetCache.invalidate(sheet.getId());
+    }
+    
+    /**
+     * Moves the version of a spreadsheet forward after a change of its sheets list, permissions or media
+     */
+    private void touch(Spreadsheet spreadsheet) {
+        spreadsheetRepository.incrementVersion(spreadsheet.getId(), LocalDateTime.now());
     }
     
     private void deleteMediaFile(String filePath) {
@@ -386,54 +805,59 @@ public class SpreadsheetService {
      * Updates an entire row with the provided values
      */
     public void updateRow(Long sheetId, Integer rowIndex, List<String> values, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        CellStorage storage = cellStorages.forSheet(sheet);
+        ensureStats(sheet, rowMap, storage);
+        int rowId = rowMap.rowIdFor(rowIndex);
+        sheet.setRowMap(rowMap.encode());
 
         // Clear existing cells in the row
-        List<Cell> existingCells = cellRepository.findBySheetAndRowIndex(sheet, rowIndex);
-        cellRepository.deleteAll(existingCells);
+        CellStats removed = storage.measure(sheet, rowId, rowId, 0, Integer.MAX_VALUE);
+        storage.deleteRows(sheet, rowId, rowId);
 
         // Insert new values
-        for (int col = 0; col < values.size(); col++) {
-            String value = values.get(col);
-            if (value != null && !value.trim().isEmpty()) {
-                Cell cell = new Cell();
-                cell.setSheet(sheet);
-                cell.setRowIndex(rowIndex);
-                cell.setColumnIndex(col);
-                cell.setValue(value.trim());
-                cellRepository.save(cell);
-            }
+        CellStats written = new CellStats();
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            writeRow(writer, rowId, rowIndex, values, written);
+        }
+
+        removed.removeFrom(sheet);
+        written.addTo(sheet);
+        if (removed.getCount() > 0 && (rowIndex >= sheet.getMaxRow() || removed.getMaxColumn() >= sheet.getMaxColumn())) {
+            refreshExtent(sheet, rowMap, storage);
         }
+        touch(sheet);
     }
 
     /**
      * Appends a new row at the end of the sheet
      */
     public Integer appendRow(Long sheetId, List<String> values, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
 
-        // Find the next available row index
-        Integer maxRowIndex = cellRepository.findMaxRowIndexBySheet(sheet);
-        Integer newRowIndex = (maxRowIndex != null) ? maxRowIndex + 1 : 0;
+        // The next available row follows the last row holding a cell
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        CellStorage storage = cellStorages.forSheet(sheet);
+        ensureStats(sheet, rowMap, storage);
+        int newRowIndex = sheet.getMaxRow() + 1;
+        int rowId = rowMap.rowIdFor(newRowIndex);
+        sheet.setRowMap(rowMap.encode());
 
         // Insert values
-        for (int col = 0; col < values.size(); col++) {
-            String value = values.get(col);
-            if (value != null && !value.trim().isEmpty()) {
-                Cell cell = new Cell();
-                cell.setSheet(sheet);
-                cell.setRowIndex(newRowIndex);
-                cell.setColumnIndex(col);
-                cell.setValue(value.trim());
-                cellRepository.save(cell);
-            }
+        CellStats written = new CellStats();
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            writeRow(writer, rowId, newRowIndex, values, written);
         }
+        written.addTo(sheet);
+        touch(sheet);
 
         return newRowIndex;
     }
@@ -442,108 +866,294 @@ public class SpreadsheetService {
      * Appends a new row at the end of the sheet
      */
     public int appendMultipleRows(Long sheetId, List<List<String>> rows, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
 
-        // Find the next available row index
-        Integer maxRowIndex = cellRepository.findMaxRowIndexBySheet(sheet);
-        int startRowIndex = (maxRowIndex != null) ? maxRowIndex + 1 : 0;
+        // The next available row follows the last row holding a cell; allocate row ids for all new rows at once
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        CellStorage storage = cellStorages.forSheet(sheet);
+        ensureStats(sheet, rowMap, storage);
+        int startRowIndex = sheet.getMaxRow() + 1;
+        rowMap.rowIdFor(startRowIndex + rows.size() - 1);
+        sheet.setRowMap(rowMap.encode());
 
         int appendedCount = 0;
 
-        for (List<String> rowValues : rows) {
-            // Insert values for this row
-            for (int col = 0; col < rowValues.size(); col++) {
-                String value = rowValues.get(col);
-                if (value != null && !value.trim().isEmpty()) {
-                    Cell cell = new Cell();
-                    cell.setSheet(sheet);
-                    cell.setRowIndex(startRowIndex + appendedCount);
-                    cell.setColumnIndex(col);
-                    cell.setValue(value.trim());
-                    cellRepository.save(cell);
-                }
+        CellStats written = new CellStats();
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            for (List<String> rowValues : rows) {
+                // Insert values for this row
+                int position = startRowIndex + appendedCount;
+                writeRow(writer, rowMap.rowIdAt(position), position, rowValues, written);
+                appendedCount++;
             }
-            appendedCount++;
         }
+        written.addTo(sheet);
+        touch(sheet);
 
         return appendedCount;
     }
 
+    /**
+     * Position following the last row holding a cell
+     */
+    private int findNextRowIndex(Sheet sheet, RowMap rowMap) {
+        CellStorage storage = cellStorages.forSheet(sheet);
+        if (rowMap.isIdentity()) {
+            Integer maxRowIndex = storage.findMaxRowId(sheet, 0, Integer.MAX_VALUE);
+            return (maxRowIndex != null) ? maxRowIndex + 1 : 0;
+        }
+
+        // Look for the last used row from the end of the row map
+        int[] next = {-1};
+        rowMap.forEachSegmentReversed((position, firstRowId, length) -> {
+            if (next[0] < 0) {
+                Integer maxRowId = storage.findMaxRowId(sheet, firstRowId, firstRowId + length - 1);
+                if (maxRowId != null) {
+                    next[0] = position + (maxRowId - firstRowId) + 1;
+                }
+            }
+        });
+        return Math.max(next[0], 0);
+    }
+
+    /**
+     * Row map of a sheet ready for a structural edit
+     */
+    private RowMap materializeRowMap(Sheet sheet, CellStorage storage) {
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        ensureStats(sheet, rowMap, storage);
+        if (rowMap.isIdentity()) {
+            rowMap.materialize(sheet.getMaxRow() + 1);
+        }
+        return rowMap;
+    }
+
+    /**
+     * Computes the statistics of a sheet not changed since before they were maintained
+     */
+    private void ensureStats(Sheet sheet, RowMap rowMap, CellStorage storage) {
+        if (sheet.getCellCount() != null && sheet.getByteSize() != null
+                && sheet.getMaxRow() != null && sheet.getMaxColumn() != null) {
+            return;
+        }
+        CellStats all = storage.measure(sheet, 0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE);
+        sheet.setCellCount(all.getCount());
+        sheet.setByteSize(all.getSize());
+        sheet.setMaxColumn(all.getMaxColumn());
+        sheet.setMaxRow(findNextRowIndex(sheet, rowMap) - 1);
+    }
+
+    /**
+     * Looks up the extent of a sheet again, once cells of its last row or column were deleted
+     */
+    private void refreshExtent(Sheet sheet, RowMap rowMap, CellStorage storage) {
+        sheet.setMaxRow(findNextRowIndex(sheet, rowMap) - 1);
+        Integer maxColumn = storage.findMaxColumn(sheet);
+        sheet.setMaxColumn((maxColumn != null) ? maxColumn : -1);
+    }
+
+    /**
+     * Current values of the cells at the given positions (keyed like SparseGrid), from the sheet cache when possible.
+     * Dense updates are read with one scan of their bounding rectangle, scattered ones row by row.
+     */
+    private Map<Long, String> readValues(Sheet sheet, RowMap rowMap, CellStorage storage, Set<Long> positions) {
+        Map<Long, String> values = new HashMap<>();
+        if (positions.isEmpty()) {
+            return values;
+        }
+
+        TreeMap<Integer, int[]> columnsByRow = new TreeMap<>();
+        int minCol = Integer.MAX_VALUE;
+        int maxCol = -1;
+        for (long key : positions) {
+            int column = SparseGrid.column(key);
+            columnsByRow.merge(SparseGrid.row(key), new int[] {column, column},
+                (a, b) -> new int[] {Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+            minCol = Math.min(minCol, column);
+            maxCol = Math.max(maxCol, column);
+        }
+
+        CellVisitor collector = (row, column, value, type) -> {
+            long key = SparseGrid.key(row, column);
+            if (positions.contains(key)) {
+                values.put(key, value);
+            }
+        };
+        SheetCache.Contents cached = sheetCache.get(sheet);
+        int firstRow = columnsByRow.firstKey();
+        int lastRow = columnsByRow.lastKey();
+        long area = (long) (lastRow - firstRow + 1) * (maxCol - minCol + 1);
+        if (cached != null || area <= 4L * positions.size()) {
+            readCells(sheet, cached, rowMap, storage, firstRow, lastRow, minCol, maxCol, Integer.MAX_VALUE, collector);
+        } else {
+            columnsByRow.forEach((row, columns) ->
+                readCells(sheet, null, rowMap, storage, row, row, columns[0], columns[1], Integer.MAX_VALUE, collector));
+        }
+        return values;
+    }
+
+    private static void visitPrevious(Map<Long, String> previous, long key, CellStats stats) {
+        String value = previous.get(key);
+        if (value != null) {
+            stats.visit(SparseGrid.row(key), SparseGrid.column(key), value, null);
+        }
+    }
+
+    /**
+     * Queues the non-empty values of a row, trimmed, in the cell writer, and adds them at the row position to the statistics
+     */
+    private void writeRow(CellWriter writer, int rowId, int position, List<String> values, CellStats written) {
+        for (int col = 0; col < values.size(); col++) {
+            String value = values.get(col);
+            if (value != null && !value.trim().isEmpty()) {
+                writer.add(rowId, col, value.trim());
+                written.visit(position, col, value.trim(), null);
+            }
+        }
+    }
+
     /**
      * Deletes one or more consecutive rows
      */
     public void deleteRows(Long sheetId, Integer startRow, Integer count, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+
+        // Remove the rows from the row map: the rows below move up without being rewritten
+        CellStorage storage = cellStorages.forSheet(sheet);
+        RowMap rowMap = materializeRowMap(sheet, storage);
+        List<int[]> removedRowIds = rowMap.remove(startRow, count);
+        sheet.setRowMap(rowMap.encode());
 
         // Delete cells in the specified rows
-        for (int i = 0; i < count; i++) {
-            List<Cell> cellsToDelete = cellRepository.findBySheetAndRowIndex(sheet, startRow + i);
-            cellRepository.deleteAll(cellsToDelete);
+        boolean extentRemoved = false;
+        for (int[] range : removedRowIds) {
+            CellStats removed = storage.measure(sheet, range[0], range[1], 0, Integer.MAX_VALUE);
+            removed.removeFrom(sheet);
+            extentRemoved |= removed.getCount() > 0 && removed.getMaxColumn() >= sheet.getMaxColumn();
+            storage.deleteRows(sheet, range[0], range[1]);
         }
 
-        // Shift remaining rows up
-        List<Cell> cellsToShift = cellRepository.findBySheetAndRowIndexGreaterThan(sheet, startRow + count - 1);
-        for (Cell cell : cellsToShift) {
-            cell.setRowIndex(cell.getRowIndex() - count);
-            cellRepository.save(cell);
+        if (sheet.getMaxRow() >= startRow + count) {
+            sheet.setMaxRow(sheet.getMaxRow() - count);
+        } else if (sheet.getMaxRow() >= startRow) {
+            extentRemoved = true;
+        }
+        if (extentRemoved) {
+            refreshExtent(sheet, rowMap, storage);
         }
+        touch(sheet);
+    }
+
+    /**
+     * Inserts a new row at the specified position, moving the following rows down
+     */
+    public void insertRow(Long sheetId, Integer rowIndex, List<String> values, String username) {
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
+                .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+
+        // Only the row map changes, the new row gets a fresh row id
+        CellStorage storage = cellStorages.forSheet(sheet);
+        RowMap rowMap = materializeRowMap(sheet, storage);
+        rowMap.insert(rowIndex, 1);
+        int rowId = rowMap.rowIdFor(rowIndex);
+        sheet.setRowMap(rowMap.encode());
+        if (rowIndex <= sheet.getMaxRow()) {
+            sheet.setMaxRow(sheet.getMaxRow() + 1);
+        }
+
+        CellStats written = new CellStats();
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            writeRow(writer, rowId, rowIndex, values, written);
+        }
+        written.addTo(sheet);
+        touch(sheet);
     }
 
     /**
      * Inserts a new column at the specified position
      */
     public void insertColumn(Long sheetId, Integer columnIndex, List<String> values, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        checkPosition("columnIndex", columnIndex);
 
         // Shift existing columns to the right
-        List<Cell> cellsToShift = cellRepository.findBySheetAndColumnIndexGreaterThanEqual(sheet, columnIndex);
-        for (Cell cell : cellsToShift) {
-            cell.setColumnIndex(cell.getColumnIndex() + 1);
-            cellRepository.save(cell);
+        CellStorage storage = cellStorages.forSheet(sheet);
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        ensureStats(sheet, rowMap, storage);
+        storage.shiftColumns(sheet, columnIndex, 1);
+        if (columnIndex <= sheet.getMaxColumn()) {
+            sheet.setMaxColumn(sheet.getMaxColumn() + 1);
         }
 
         // Insert new column values
-        for (int row = 0; row < values.size(); row++) {
-            String value = values.get(row);
-            if (value != null && !value.trim().isEmpty()) {
-                Cell cell = new Cell();
-                cell.setSheet(sheet);
-                cell.setRowIndex(row);
-                cell.setColumnIndex(columnIndex);
-                cell.setValue(value.trim());
-                cellRepository.save(cell);
+        CellStats written = new CellStats();
+        try (CellWriter writer = storage.openWriter(sheet)) {
+            for (int row = 0; row < values.size(); row++) {
+                String value = values.get(row);
+                if (value != null && !value.trim().isEmpty()) {
+                    writer.add(rowMap.rowIdFor(row), columnIndex, value.trim());
+                    written.visit(row, columnIndex, value.trim(), null);
+                }
             }
         }
+        sheet.setRowMap(rowMap.encode());
+        written.addTo(sheet);
+        touch(sheet);
     }
 
     /**
      * Deletes a column and shifts remaining columns left
      */
     public void deleteColumn(Long sheetId, Integer columnIndex, String username) {
-        Sheet sheet = sheetRepository.findById(sheetId)
+        Sheet sheet = sheetRepository.findByIdForUpdate(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        checkPosition("columnIndex", columnIndex);
 
         // Delete cells in the specified column
-        List<Cell> cellsToDelete = cellRepository.findBySheetAndColumnIndex(sheet, columnIndex);
-        cellRepository.deleteAll(cellsToDelete);
+        CellStorage storage = cellStorages.forSheet(sheet);
+        RowMap rowMap = RowMap.decode(sheet.getRowMap());
+        ensureStats(sheet, rowMap, storage);
+        CellStats removed = storage.measure(sheet, 0, Integer.MAX_VALUE, columnIndex, columnIndex);
+        storage.deleteColumn(sheet, columnIndex);
 
         // Shift remaining columns to the left
-        List<Cell> cellsToShift = cellRepository.findBySheetAndColumnIndexGreaterThan(sheet, columnIndex);
-        for (Cell cell : cellsToShift) {
-            cell.setColumnIndex(cell.getColumnIndex() - 1);
-            cellRepository.save(cell);
+        storage.shiftColumns(sheet, columnIndex + 1, -1);
+
+        // The deleted cells may have been the last ones of the last row or column
+        removed.removeFrom(sheet);
+        if (removed.getCount() > 0) {
+            refreshExtent(sheet, rowMap, storage);
+        } else if (sheet.getMaxColumn() > columnIndex) {
+            sheet.setMaxColumn(sheet.getMaxColumn() - 1);
         }
+        touch(sheet);
+    }
+
+    /**
+     * Counts the cells of a column and aggregates its numeric values
+     */
+    public ColumnStatsDTO getColumnStats(Long sheetId, Integer columnIndex, String username) {
+        Sheet sheet = sheetRepository.findById(sheetId)
+                .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
+
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.VIEW);
+
+        ColumnStatsDTO stats = cellStorages.forSheet(sheet).columnStats(sheet, columnIndex);
+        stats.setColumn(columnIndex);
+        return stats;
     }
 
     /**
@@ -555,7 +1165,7 @@ public class SpreadsheetService {
         Sheet sheet = sheetRepository.findById(sheetId)
                 .orElseThrow(() -> new ResourceNotFoundException("Sheet not found"));
 
-        checkPermission(sheet.getSpreadsheet(), username, PermissionType.EDIT);
+        authorization.check(sheet.getSpreadsheet(), username, PermissionType.EDIT);
 
         // Check if this is the last sheet in the spreadsheet
         Spreadsheet spreadsheet = sheet.getSpreadsheet();
@@ -564,10 +1174,8 @@ public class SpreadsheetService {
         }
 
         // Delete all cells in this sheet first
-        List<Cell> sheetCells = cellRepository.findBySheet(sheet);
-        if (!sheetCells.isEmpty()) {
-            cellRepository.deleteAll(sheetCells);
-        }
+        cellStorages.forSheet(sheet).deleteAll(sheet);
+        sheetCache.invalidate(sheet.getId());
 
         // Remove sheet from spreadsheet's sheets collection
         spreadsheet.getSheets().remove(sheet);
@@ -580,6 +1188,7 @@ public class SpreadsheetService {
 
         // Save the updated spreadsheet
         spreadsheetRepository.save(spreadsheet);
+        touch(spreadsheet);
     }
 
     /**
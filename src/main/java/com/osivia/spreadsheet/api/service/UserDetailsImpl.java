@@ -18,11 +18,18 @@ public class UserDetailsImpl implements UserDetails {
     @JsonIgnore
     private final String password;
     
+    private final Collection<? extends GrantedAuthority> authorities;
+    
     public UserDetailsImpl(Long id, String username, String email, String password) {
+        this(id, username, email, password, Collections.emptyList());
+    }
+    
+    public UserDetailsImpl(Long id, String username, String email, String password, Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
+        this.authorities = authorities;
     }
     
     public static UserDetailsImpl build(User user) {
@@ -36,7 +43,7 @@ public class UserDetailsImpl implements UserDetails {
     
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Collections.emptyList();
+        return authorities;
     }
     
     public Long getId() {
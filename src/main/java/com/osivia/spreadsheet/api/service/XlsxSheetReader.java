@@ -0,0 +1,298 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the cells of an xlsx workbook sheet by sheet with the XSSF event API.
+ *
+ * The sheets are parsed with SAX and their cells passed to a visitor as they are read,
+ * so memory does not grow with the size of the sheets; only the shared strings table
+ * is held in memory. Values and types are the same as those read through the usermodel:
+ * numbers and dates by their native type, formulas by their cached result.
+ */
+public class XlsxSheetReader implements Closeable {
+
+    private final OPCPackage pkg;
+
+    private final ReadOnlySharedStringsTable sharedStrings;
+
+    private final StylesTable styles;
+
+    private final boolean date1904;
+
+    private final XSSFReader.SheetIterator sheets;
+
+    private final JobProgress progress;
+
+    private InputStream sheetData;
+
+    // Whether each cell style is a date format
+    private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+    /**
+     * @param progress receives the bytes of sheet data read, uncompressed
+     */
+    public XlsxSheetReader(File file, JobProgress progress) throws IOException {
+        this.progress = progress;
+        try {
+            this.pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new IOException("Invalid xlsx file", e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            this.sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            this.styles = reader.getStylesTable();
+            this.date1904 = readDate1904(reader);
+            this.sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        } catch (OpenXML4JException | SAXException | RuntimeException e) {
+            pkg.revert();
+            throw new IOException("Invalid xlsx file", e);
+        } catch (IOException e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next sheet of the workbook
+     * @return false when there is none left
+     */
+    public boolean nextSheet() throws IOException {
+        closeSheet();
+        if (!sheets.hasNext()) {
+            return false;
+        }
+        sheetData = progress.countBytes(sheets.next());
+        return true;
+    }
+
+    public String getSheetName() {
+        return sheets.getSheetName();
+    }
+
+    /**
+     * Passes the non-blank cells of the current sheet to the visitor, in row then column order
+     */
+    public void readSheet(CellVisitor visitor) throws IOException {
+        parse(sheetData, new SheetHandler(visitor));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSheet();
+        // Opened read-only, nothing to save
+        pkg.revert();
+    }
+
+    private void closeSheet() throws IOException {
+        if (sheetData != null) {
+            sheetData.close();
+            sheetData = null;
+        }
+    }
+
+    private static boolean readDate1904(XSSFReader reader) throws IOException, OpenXML4JException {
+        boolean[] date1904 = {false};
+        try (InputStream workbook = reader.getWorkbookData()) {
+            parse(workbook, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                    }
+                }
+            });
+        }
+        return date1904[0];
+    }
+
+    private static void parse(InputStream in, DefaultHandler handler) throws IOException {
+        try {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(handler);
+            xmlReader.parse(new InputSource(in));
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Invalid xlsx file", e);
+        }
+    }
+
+    private boolean isDateStyle(int styleIndex) {
+        if (styles == null || styleIndex >= styles.getNumCellStyles()) {
+            return false;
+        }
+        return dateStyles.computeIfAbsent(styleIndex, index -> {
+            XSSFCellStyle style = styles.getStyleAt(index);
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        });
+    }
+
+    /**
+     * Reads the cells of one sheet: c elements with their value in v (or in is/t for inline strings)
+     */
+    private class SheetHandler extends DefaultHandler {
+
+        private final CellVisitor visitor;
+
+        private final StringBuilder text = new StringBuilder();
+
+        private boolean inText;
+
+        private int row = -1;
+
+        private int column;
+
+        private String cellType;
+
+        private int cellStyle;
+
+        private boolean formula;
+
+        private boolean hasValue;
+
+        // Phonetic runs of inline strings are not part of their text
+        private boolean inPhonetic;
+
+        SheetHandler(CellVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String rowReference = attributes.getValue("r");
+                    row = (rowReference != null) ? Integer.parseInt(rowReference) - 1 : row + 1;
+                    column = -1;
+                    break;
+                case "c":
+                    String reference = attributes.getValue("r");
+                    if (reference != null) {
+                        CellReference cellReference = new CellReference(reference);
+                        row = cellReference.getRow();
+                        column = cellReference.getCol();
+                    } else {
+                        column++;
+                    }
+                    cellType = attributes.getValue("t");
+                    String style = attributes.getValue("s");
+                    cellStyle = (style != null) ? Integer.parseInt(style) : 0;
+                    formula = false;
+                    hasValue = false;
+                    text.setLength(0);
+                    break;
+                case "f":
+                    formula = true;
+                    break;
+                case "v":
+                    hasValue = true;
+                    inText = true;
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    if (!inPhonetic) {
+                        hasValue = true;
+                        inText = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inText = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "c":
+                    if (hasValue) {
+                        visitCell(text.toString());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        private void visitCell(String raw) {
+            String value;
+            CellValueType type;
+            switch ((cellType != null) ? cellType : "n") {
+                case "s":
+                    value = sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                    type = CellValueType.STRING;
+                    break;
+                case "inlineStr":
+                    value = raw;
+                    type = CellValueType.STRING;
+                    break;
+                case "str":
+                    value = raw;
+                    type = formula ? CellValues.infer(value) : CellValueType.STRING;
+                    break;
+                case "b":
+                    value = String.valueOf("1".equals(raw.trim()) || "true".equalsIgnoreCase(raw.trim()));
+                    type = CellValueType.BOOLEAN;
+                    break;
+                case "e":
+                    value = "";
+                    type = CellValueType.STRING;
+                    break;
+                default:
+                    if (raw.trim().isEmpty()) {
+                        return;
+                    }
+                    double number = Double.parseDouble(raw.trim());
+                    if (!formula && isDateStyle(cellStyle) && DateUtil.isValidExcelDate(number)) {
+                        value = CellValues.formatDate(DateUtil.getLocalDateTime(number, date1904));
+                        type = CellValueType.DATE;
+                    } else {
+                        value = String.valueOf(number);
+                        type = formula ? CellValues.infer(value) : CellValueType.NUMBER;
+                    }
+            }
+            visitor.visit(row, column, value, type);
+        }
+    }
+}
@@ -4,19 +4,30 @@ import com.opencsv.exceptions.CsvValidationException;
 import com.osivia.spreadsheet.api.entity.*;
 import com.osivia.spreadsheet.api.exception.ResourceNotFoundException;
 import com.osivia.spreadsheet.api.repository.*;
+import com.osivia.spreadsheet.api.storage.CellStats;
+import com.osivia.spreadsheet.api.storage.CellStorageRegistry;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.opencsv.CSVReader;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.utils.CountingOutputStream;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.zip.*;
 
 
@@ -30,7 +41,7 @@ public class ZipExportImportService {
     private final  SheetRepository sheetRepository;
 
 
-    private final  CellRepository cellRepository;
+    private final  CellStorageRegistry cellStorages;
 
 
     private final  MediaRepository mediaRepository;
@@ -38,17 +49,27 @@ public class ZipExportImportService {
 
     private final  UserRepository userRepository;
 
+    private final SpreadsheetService spreadsheetService;
+
+    private final SheetExportExecutor exportExecutor;
+
+    private final TransactionTemplate readOnlyTransaction;
+
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public ZipExportImportService(SpreadsheetRepository spreadsheetRepository, SheetRepository sheetRepository, CellRepository cellRepository, MediaRepository mediaRepository, UserRepository userRepository) {
+    public ZipExportImportService(SpreadsheetRepository spreadsheetRepository, SheetRepository sheetRepository, CellStorageRegistry cellStorages, MediaRepository mediaRepository, UserRepository userRepository, SpreadsheetService spreadsheetService, SheetExportExecutor exportExecutor, PlatformTransactionManager transactionManager) {
         this.spreadsheetRepository = spreadsheetRepository;
         this.sheetRepository = sheetRepository;
-        this.cellRepository = cellRepository;
+        this.cellStorages = cellStorages;
         this.mediaRepository = mediaRepository;
         this.userRepository = userRepository;
+        this.spreadsheetService = spreadsheetService;
+        this.exportExecutor = exportExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     // DTO pour metadata.json (sans les données des cellules)
@@ -62,6 +83,7 @@ public class ZipExportImportService {
     public static class SheetMetadata {
         public String name;
         public String filename; // nom du fichier CSV
+        public CellStorageMode storageMode; // absent des exports plus anciens
     }
 
     public static class MediaMetadata {
@@ -71,222 +93,408 @@ public class ZipExportImportService {
     }
 
     /**
-     * Exporte un spreadsheet complet en fichier ZIP
+     * Exporte un spreadsheet complet en fichier ZIP, écrit au fur et à mesure dans le flux de sortie
+     * (les cellules sont lues par curseur et les fichiers média copiés par blocs, rien n'est gardé en mémoire).
+     * Avec plusieurs sheets, chacun est lu et compressé en parallèle sur le pool d'export, puis recopié
+     * tel quel dans le ZIP, dans l'ordre des sheets.
      */
-    @Transactional(readOnly = true)
-    public byte[] exportSpreadsheetToZip(Long spreadsheetId) throws IOException {
-        Spreadsheet spreadsheet = spreadsheetRepository.findById(spreadsheetId)
-                .orElseThrow(() -> new RuntimeException("Spreadsheet not found"));
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            // 1. Créer le metadata JSON (sans les données des cellules)
-            SpreadsheetMetadata metadata = new SpreadsheetMetadata();
-            metadata.name = spreadsheet.getName();
-            metadata.description = spreadsheet.getDescription();
-
-            // 2. Exporter chaque sheet en CSV
-            for (Sheet sheet : spreadsheet.getSheets()) {
-                String csvFilename = sanitizeFilename(sheet.getName()) + ".csv";
-
-                // Ajouter les métadonnées du sheet
-                SheetMetadata sheetMeta = new SheetMetadata();
-                sheetMeta.name = sheet.getName();
-                sheetMeta.filename = csvFilename;
-                metadata.sheets.add(sheetMeta);
-
-                // Créer le fichier CSV dans le ZIP
-                ZipEntry csvEntry = new ZipEntry("sheets/" + csvFilename);
-                zos.putNextEntry(csvEntry);
-                writeSheetToCsv(sheet, zos);
-                zos.closeEntry();
-            }
+    public void exportSpreadsheetToZip(Long spreadsheetId, OutputStream outputStream) throws IOException {
+        exportSpreadsheetToZip(spreadsheetId, outputStream, new JobProgress());
+    }
 
-            // 3. Ajouter les métadonnées des fichiers média
-            for (Media media : spreadsheet.getMediaFiles()) {
-                MediaMetadata mediaMeta = new MediaMetadata();
-                mediaMeta.filename = media.getFilename();
-                mediaMeta.contentType = media.getContentType();
-                mediaMeta.size = media.getFileSize();
-                metadata.mediaFiles.add(mediaMeta);
+    /**
+     * Exporte un spreadsheet en fichier ZIP en comptant dans progress les lignes lues et les octets écrits.
+     *
+     * Seules les métadonnées sont lues dans une transaction, courte ; chaque sheet est ensuite lu dans
+     * sa propre transaction, sans transaction englobante qui garderait une connexion pendant que les
+     * threads du pool d'export prennent les leurs.
+     */
+    public void exportSpreadsheetToZip(Long spreadsheetId, OutputStream outputStream, JobProgress progress) throws IOException {
+        ZipExport export = readOnlyTransaction.execute(status -> prepareExport(spreadsheetId));
+        SpreadsheetMetadata metadata = export.metadata;
+
+        // Le flux de sortie n'est pas fermé, seulement terminé
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new BufferedOutputStream(progress.countBytes(outputStream), 64 * 1024));
+
+        // 1. Ajouter metadata.json en premier, pour que l'import le lise avant les données
+        ZipArchiveEntry metadataEntry = new ZipArchiveEntry("metadata.json");
+        zos.putArchiveEntry(metadataEntry);
+        zos.write(objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsBytes(metadata));
+        zos.closeArchiveEntry();
+
+        // 2. Exporter chaque sheet en CSV
+        int sheetCount = export.sheetIds.size();
+        if (exportExecutor.isParallel() && sheetCount > 1) {
+            List<Callable<EncodedEntry>> encodings = new ArrayList<>();
+            for (int i = 0; i < sheetCount; i++) {
+                String entryName = "sheets/" + metadata.sheets.get(i).filename;
+                Long sheetId = export.sheetIds.get(i);
+                int maxCol = export.maxColumns.get(i);
+                encodings.add(() -> encodeSheet(entryName, sheetId, maxCol, progress));
             }
-
-            // 4. Ajouter metadata.json au ZIP
-            ZipEntry metadataEntry = new ZipEntry("metadata.json");
-            zos.putNextEntry(metadataEntry);
-            zos.write(objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValueAsBytes(metadata));
-            zos.closeEntry();
-
-            // 5. Ajouter les fichiers média au ZIP
-            for (Media media : spreadsheet.getMediaFiles()) {
-                Path filePath = Paths.get(uploadDir, media.getFilename());
-                if (Files.exists(filePath)) {
-                    ZipEntry mediaEntry = new ZipEntry("media/" + media.getFilename());
-                    zos.putNextEntry(mediaEntry);
-                    Files.copy(filePath, zos);
-                    zos.closeEntry();
+            exportExecutor.runInOrder(encodings, encoded -> {
+                try (EncodedEntry entry = encoded; InputStream data = Files.newInputStream(entry.data)) {
+                    zos.addRawArchiveEntry(entry.toArchiveEntry(), data);
                 }
+            }, EncodedEntry::delete);
+        } else {
+            for (int i = 0; i < sheetCount; i++) {
+                Long sheetId = export.sheetIds.get(i);
+                ZipArchiveEntry csvEntry = new ZipArchiveEntry("sheets/" + metadata.sheets.get(i).filename);
+                zos.putArchiveEntry(csvEntry);
+                writeCsv(export.maxColumns.get(i), visitor -> spreadsheetService.exportCells(sheetId, progress.countRows(visitor)), zos);
+                zos.closeArchiveEntry();
             }
         }
 
-        return baos.toByteArray();
-    }
+        // 3. Ajouter les fichiers média au ZIP
+        for (MediaMetadata media : metadata.mediaFiles) {
+            Path filePath = Paths.get(uploadDir, media.filename);
+            if (Files.exists(filePath)) {
+                ZipArchiveEntry mediaEntry = new ZipArchiveEntry("media/" + media.filename);
+                zos.putArchiveEntry(mediaEntry);
+                Files.copy(filePath, zos);
+                zos.closeArchiveEntry();
+            }
+        }
 
+        zos.finish();
+        zos.flush();
+    }
 
     /**
-     * Écrit les données d'un sheet au format CSV (version simple sans OpenCSV)
+     * Ce qu'un export ZIP lit de la base avant d'écrire l'archive : rien de la session, seulement des valeurs
      */
-    private void writeSheetToCsv(Sheet sheet, OutputStream outputStream) throws IOException {
-        // Trouver les dimensions maximales
-        int maxRow = 0;
-        int maxCol = 0;
-
-        Map<String, Cell> cellMap = new HashMap<>();
-        for (Cell cell : sheet.getCells()) {
-            String key = cell.getRowIndex() + "," + cell.getColumnIndex();
-            cellMap.put(key, cell);
-            maxRow = Math.max(maxRow, cell.getRowIndex());
-            maxCol = Math.max(maxCol, cell.getColumnIndex());
+    private static class ZipExport {
+
+        private final SpreadsheetMetadata metadata = new SpreadsheetMetadata();
+
+        private final List<Long> sheetIds = new ArrayList<>();
+
+        // Dernière colonne des lignes CSV de chaque sheet
+        private final List<Integer> maxColumns = new ArrayList<>();
+    }
+
+    private ZipExport prepareExport(Long spreadsheetId) {
+        Spreadsheet spreadsheet = spreadsheetRepository.findById(spreadsheetId)
+                .orElseThrow(() -> new ResourceNotFoundException("Spreadsheet not found"));
+
+        // Créer le metadata JSON (sans les données des cellules)
+        ZipExport export = new ZipExport();
+        export.metadata.name = spreadsheet.getName();
+        export.metadata.description = spreadsheet.getDescription();
+
+        // Ajouter les métadonnées des sheets
+        for (Sheet sheet : spreadsheet.getSheets()) {
+            SheetMetadata sheetMeta = new SheetMetadata();
+            sheetMeta.name = sheet.getName();
+            sheetMeta.filename = sanitizeFilename(sheet.getName()) + ".csv";
+            sheetMeta.storageMode = sheet.getStorageMode();
+            export.metadata.sheets.add(sheetMeta);
+            export.sheetIds.add(sheet.getId());
+            export.maxColumns.add(csvMaxColumn(sheet));
         }
 
-        // Écrire directement avec PrintWriter (ne ferme pas le stream sous-jacent)
-        PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        // Ajouter les métadonnées des fichiers média
+        for (Media media : spreadsheet.getMediaFiles()) {
+            MediaMetadata mediaMeta = new MediaMetadata();
+            mediaMeta.filename = media.getFilename();
+            mediaMeta.contentType = media.getContentType();
+            mediaMeta.size = media.getFileSize();
+            export.metadata.mediaFiles.add(mediaMeta);
+        }
+        return export;
+    }
 
-        for (int row = 0; row <= maxRow; row++) {
-            StringBuilder line = new StringBuilder();
 
-            for (int col = 0; col <= maxCol; col++) {
-                if (col > 0) {
-                    line.append(",");
-                }
+    /**
+     * Entrée CSV déjà compressée (deflate brut) dans un fichier temporaire, à recopier telle quelle dans le ZIP
+     */
+    private static class EncodedEntry implements Closeable {
 
-                Cell cell = cellMap.get(row + "," + col);
-                String value = cell != null ? cell.getValue() : "";
+        private final String name;
 
-                // Échapper les valeurs si nécessaire
-                if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-                    value = "\"" + value.replace("\"", "\"\"") + "\"";
-                }
+        private final Path data;
+
+        private long crc;
+
+        private long size;
 
-                line.append(value);
+        private EncodedEntry(String name, Path data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        private ZipArchiveEntry toArchiveEntry() throws IOException {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(ZipEntry.DEFLATED);
+            entry.setCrc(crc);
+            entry.setSize(size);
+            entry.setCompressedSize(Files.size(data));
+            return entry;
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(data);
+            } catch (IOException e) {
+                System.err.println("Failed to delete: " + data + " - " + e.getMessage());
             }
+        }
 
-            writer.println(line.toString());
+        @Override
+        public void close() {
+            delete();
         }
+    }
 
-        writer.flush(); // Important: flush mais ne pas close
+    /**
+     * Lit un sheet et compresse son CSV dans un fichier temporaire (exécuté sur le pool d'export)
+     */
+    private EncodedEntry encodeSheet(String entryName, Long sheetId, int maxCol, JobProgress progress) throws IOException {
+        EncodedEntry encoded = new EncodedEntry(entryName, Files.createTempFile("spreadsheet-export-", ".deflate"));
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            CRC32 crc = new CRC32();
+            CountingOutputStream counter = new CountingOutputStream(new DeflaterOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(encoded.data)), deflater, 64 * 1024));
+            try (OutputStream out = new CheckedOutputStream(counter, crc)) {
+                writeCsv(maxCol, visitor -> spreadsheetService.exportCells(sheetId, progress.countRows(visitor)), out);
+            }
+            encoded.crc = crc.getValue();
+            encoded.size = counter.getBytesWritten();
+            return encoded;
+        } catch (IOException | RuntimeException e) {
+            encoded.delete();
+            throw e;
+        } finally {
+            deflater.end();
+        }
     }
 
     /**
-     * Importe un spreadsheet depuis un fichier ZIP
+     * Dernière colonne des lignes CSV d'un sheet, connue d'avance par ses statistiques
+     */
+    private int csvMaxColumn(Sheet sheet) {
+        Integer maxColumn = (sheet.getMaxColumn() != null) ? sheet.getMaxColumn() : cellStorages.forSheet(sheet).findMaxColumn(sheet);
+        return Math.max((maxColumn != null) ? maxColumn : -1, 0);
+    }
+
+    /**
+     * Écrit les données d'un sheet au format CSV, les cellules arrivant ligne par ligne dans l'ordre
+     * (le flux de sortie n'est pas fermé)
+     */
+    private void writeCsv(int maxCol, Consumer<CellVisitor> cells, OutputStream outputStream) throws IOException {
+        new CsvEncoder(outputStream, ',', 0, 0, maxCol).encode(cells);
+    }
+
+    /**
+     * Importe un spreadsheet depuis un fichier ZIP, lu en une seule passe : les CSV sont écrits
+     * directement dans le stockage des cellules et les fichiers média dans le répertoire d'upload.
+     *
+     * Les exports placent metadata.json en premier ; dans les archives où il vient après les CSV
+     * (exports plus anciens), ceux-ci sont mis de côté dans des fichiers temporaires en l'attendant.
      */
     @Transactional
     public Spreadsheet importSpreadsheetFromZip(MultipartFile zipFile, String userName) throws IOException {
-        // Créer un répertoire temporaire pour extraire le ZIP
-        Path tempDir = Files.createTempDirectory("spreadsheet-import-");
+        return importSpreadsheetFromZip(zipFile, userName, new JobProgress());
+    }
 
-        try {
-            // Debug : lister le contenu du ZIP
-            //debugZipContent(zipFile.getInputStream());
+    /**
+     * Importe un spreadsheet depuis un fichier ZIP (upload ou fichier) en comptant dans progress
+     * les octets lus de l'archive et les lignes CSV importées
+     */
+    @Transactional
+    public Spreadsheet importSpreadsheetFromZip(InputStreamSource zipFile, String userName, JobProgress progress) throws IOException {
+        User user = userRepository.findByUsername(userName)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        ZipImport zipImport = new ZipImport(user, progress);
+        try (ZipInputStream zis = new ZipInputStream(progress.countBytes(zipFile.getInputStream()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                // Normaliser le nom pour gérer les séparateurs Windows/Unix
+                String entryName = entry.getName().replace('\\', '/');
+                if (!entry.isDirectory()) {
+                    zipImport.readEntry(entryName, StreamUtils.nonClosing(zis));
+                }
+                zis.closeEntry();
+            }
+
+            return zipImport.complete();
+        } catch (IOException | RuntimeException e) {
+            // Les fichiers média déjà copiés n'appartiennent à aucun spreadsheet
+            zipImport.deleteMediaFiles();
+            throw e;
+        } finally {
+            zipImport.deletePendingSheets();
+        }
+    }
+
+    /**
+     * État d'un import ZIP en cours
+     */
+    private class ZipImport {
+
+        private final User user;
+
+        private final JobProgress progress;
+
+        private SpreadsheetMetadata metadata;
+
+        private Spreadsheet spreadsheet;
+
+        // Sheets importés, par position dans metadata.json
+        private final SortedMap<Integer, Sheet> sheets = new TreeMap<>();
+
+        // CSV lus avant metadata.json (nom de fichier, fichier temporaire), dans l'ordre de l'archive :
+        // plusieurs sheets peuvent avoir le même nom de fichier une fois nettoyé
+        private final List<Map.Entry<String, Path>> pendingSheets = new ArrayList<>();
+
+        // Fichiers média copiés, nouveau nom par nom dans l'archive
+        private final Map<String, String> mediaFiles = new HashMap<>();
 
-            // Extraire le ZIP
-            extractZip(zipFile.getInputStream(), tempDir);
+        ZipImport(User user, JobProgress progress) {
+            this.user = user;
+            this.progress = progress;
+        }
 
-            // Lire metadata.json
-            Path metadataPath = tempDir.resolve("metadata.json");
-            if (!Files.exists(metadataPath)) {
-                throw new RuntimeException("Invalid ZIP: metadata.json not found");
+        void readEntry(String entryName, InputStream in) throws IOException {
+            if (entryName.equals("metadata.json")) {
+                readMetadata(in);
+            } else if (entryName.startsWith("sheets/")) {
+                String filename = entryName.substring("sheets/".length());
+                if (metadata != null) {
+                    importSheet(filename, in);
+                } else {
+                    Path pending = Files.createTempFile("spreadsheet-import-", ".csv");
+                    pendingSheets.add(new AbstractMap.SimpleImmutableEntry<>(filename, pending));
+                    Files.copy(in, pending, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else if (entryName.startsWith("media/")) {
+                copyMediaFile(entryName.substring("media/".length()), in);
             }
+        }
 
-            SpreadsheetMetadata metadata = objectMapper.readValue(
-                    Files.readAllBytes(metadataPath),
-                    SpreadsheetMetadata.class
-            );
+        private void readMetadata(InputStream in) throws IOException {
+            metadata = objectMapper.readValue(in, SpreadsheetMetadata.class);
 
             // Créer le nouveau spreadsheet
-            Spreadsheet spreadsheet = new Spreadsheet();
+            spreadsheet = new Spreadsheet();
             spreadsheet.setName(metadata.name);
             spreadsheet.setDescription(metadata.description);
-            User user = userRepository.findByUsername(userName)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
             spreadsheet.setOwner(user);
             spreadsheet = spreadsheetRepository.save(spreadsheet);
 
-            // Créer les sheets depuis les fichiers CSV
-            Path sheetsDir = tempDir.resolve("sheets");
+            // Importer les CSV lus avant metadata.json
+            for (Map.Entry<String, Path> pending : pendingSheets) {
+                try (InputStream csv = Files.newInputStream(pending.getValue())) {
+                    importSheet(pending.getKey(), csv);
+                }
+            }
+            deletePendingSheets();
+        }
 
+        /**
+         * Crée le sheet décrit dans metadata.json pour ce fichier CSV et importe ses cellules
+         */
+        private void importSheet(String filename, InputStream csv) throws IOException {
+            for (int i = 0; i < metadata.sheets.size(); i++) {
+                SheetMetadata sheetMeta = metadata.sheets.get(i);
+                if (filename.equals(sheetMeta.filename) && !sheets.containsKey(i)) {
+                    Sheet sheet = new Sheet();
+                    sheet.setName(sheetMeta.name);
+                    sheet.setSpreadsheet(spreadsheet);
+                    sheet.setOrderIndex(i);
+                    sheet.setStorageMode(sheetMeta.storageMode != null ? sheetMeta.storageMode : cellStorages.getDefaultMode());
+                    sheet = sheetRepository.save(sheet);
+                    sheets.put(i, sheet);
+
+                    // Lire le CSV et créer les cellules
+                    importCellsFromCsv(csv, sheet, progress);
+                    return;
+                }
+            }
+            System.err.println("CSV file not in metadata: " + filename);
+        }
 
-            if (Files.exists(sheetsDir)) {
-                int order =0;
-                for (SheetMetadata sheetMeta : metadata.sheets) {
-                    Path csvPath = sheetsDir.resolve(sheetMeta.filename);
-                    System.out.println("Looking for CSV: " + csvPath);
+        private void copyMediaFile(String filename, InputStream in) throws IOException {
+            if (metadata != null && metadata.mediaFiles.stream().noneMatch(mediaMeta -> filename.equals(mediaMeta.filename))) {
+                return;
+            }
 
-                    if (Files.exists(csvPath)) {
-                        Sheet sheet = new Sheet();
-                        sheet.setName(sheetMeta.name);
-                        sheet.setSpreadsheet(spreadsheet);
-                        sheet.setOrderIndex( order++);
-                        sheet = sheetRepository.save(sheet);
+            // Générer un nouveau nom de fichier unique
+            String extension = "";
+            int lastDot = filename.lastIndexOf('.');
+            if (lastDot > 0) {
+                extension = filename.substring(lastDot);
+            }
+            String newFilename = UUID.randomUUID().toString() + extension;
+            Path targetPath = Paths.get(uploadDir, newFilename);
 
-                        // Lire le CSV et créer les cellules
-                        importCellsFromCsv(csvPath, sheet);
-                    } else {
-                        System.err.println("CSV file not found: " + csvPath);
-                    }
-                }
-            } else {
-                System.err.println("Sheets directory not found: " + sheetsDir);
+            // Créer le répertoire s'il n'existe pas
+            Files.createDirectories(targetPath.getParent());
+
+            // Copier le fichier
+            Files.copy(in, targetPath);
+            mediaFiles.put(filename, newFilename);
+        }
+
+        Spreadsheet complete() {
+            if (metadata == null) {
+                throw new IllegalArgumentException("Invalid ZIP: metadata.json not found");
             }
 
-            // Copier les fichiers média
-            Path mediaDir = tempDir.resolve("media");
-            if (Files.exists(mediaDir)) {
-                for (MediaMetadata mediaMeta : metadata.mediaFiles) {
-                    Path sourcePath = mediaDir.resolve(mediaMeta.filename);
-                    if (Files.exists(sourcePath)) {
-                        // Générer un nouveau nom de fichier unique
-                        String extension = "";
-                        int lastDot = mediaMeta.filename.lastIndexOf('.');
-                        if (lastDot > 0) {
-                            extension = mediaMeta.filename.substring(lastDot);
-                        }
-                        String newFilename = UUID.randomUUID().toString() + extension;
-                        Path targetPath = Paths.get(uploadDir, newFilename);
-
-                        // Créer le répertoire s'il n'existe pas
-                        Files.createDirectories(targetPath.getParent());
-
-                        // Copier le fichier
-                        Files.copy(sourcePath, targetPath);
-
-                        // Créer l'entrée Media
-                        Media media = new Media();
-                        media.setFilename(newFilename);
-                        media.setContentType(mediaMeta.contentType);
-                        media.setFileSize(mediaMeta.size);
-                        media.setSpreadsheet(spreadsheet);
-                        mediaRepository.save(media);
-                    }
+            // Numéroter les sheets dans l'ordre de metadata.json, sans trou pour les CSV absents
+            int order = 0;
+            for (Sheet sheet : sheets.values()) {
+                sheet.setOrderIndex(order++);
+            }
+
+            // Créer les entrées Media des fichiers copiés
+            for (MediaMetadata mediaMeta : metadata.mediaFiles) {
+                String newFilename = mediaFiles.get(mediaMeta.filename);
+                if (newFilename != null) {
+                    Media media = new Media();
+                    media.setFilename(newFilename);
+                    media.setContentType(mediaMeta.contentType);
+                    media.setFileSize(mediaMeta.size);
+                    media.setSpreadsheet(spreadsheet);
+                    mediaRepository.save(media);
+                    mediaFiles.remove(mediaMeta.filename);
                 }
             }
+            // Fichiers lus avant metadata.json mais absents de celui-ci
+            deleteMediaFiles();
+            mediaFiles.clear();
 
             return spreadsheet;
+        }
 
-        } finally {
-            // Nettoyer le répertoire temporaire
-            deleteDirectory(tempDir);
+        void deleteMediaFiles() {
+            for (String newFilename : mediaFiles.values()) {
+                deleteQuietly(Paths.get(uploadDir, newFilename));
+            }
+        }
+
+        void deletePendingSheets() {
+            for (Map.Entry<String, Path> pending : pendingSheets) {
+                deleteQuietly(pending.getValue());
+            }
+            pendingSheets.clear();
         }
     }
 
     /**
      * Importe les cellules depuis un fichier CSV
      */
-    private void importCellsFromCsv(Path csvPath, Sheet sheet) throws IOException {
-        try (Reader reader = Files.newBufferedReader(csvPath);
-             CSVReader csvReader = new CSVReader(reader)) {
+    private void importCellsFromCsv(InputStream csv, Sheet sheet, JobProgress progress) throws IOException {
+        // Le CSVReader n'est pas fermé, le flux appartient à l'appelant
+        CSVReader csvReader = new CSVReader(new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8)));
+        try (CellWriter writer = cellStorages.forSheet(sheet).openWriter(sheet)) {
 
+            CellStats written = new CellStats();
             String[] nextLine;
             int row = 0;
 
@@ -294,16 +502,14 @@ public class ZipExportImportService {
                 for (int col = 0; col < nextLine.length; col++) {
                     String value = nextLine[col];
                     if (value != null && !value.isEmpty()) {
-                        Cell cell = new Cell();
-                        cell.setRowIndex(row);
-                        cell.setColumnIndex(col);
-                        cell.setValue(value);
-                        cell.setSheet(sheet);
-                        cellRepository.save(cell);
+                        writer.add(row, col, value);
+                        written.visit(row, col, value, null);
                     }
                 }
                 row++;
+                progress.addRows(1);
             }
+            written.addTo(sheet);
         } catch (CsvValidationException e) {
             throw new RuntimeException(e);
         }
@@ -316,30 +522,6 @@ public class ZipExportImportService {
         return filename.replaceAll("[^a-zA-Z0-9.-]", "_");
     }
 
-    /**
-     * Extrait un fichier ZIP dans un répertoire
-     */
-    private void extractZip(InputStream zipInputStream, Path targetDir) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(zipInputStream)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                // Normaliser le nom pour gérer les séparateurs Windows/Unix
-                String entryName = entry.getName().replace('\\', '/');
-                Path targetPath = targetDir.resolve(entryName);
-
-                if (entry.isDirectory()) {
-                    Files.createDirectories(targetPath);
-                } else {
-                    // S'assurer que le répertoire parent existe
-                    Files.createDirectories(targetPath.getParent());
-                    Files.copy(zis, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                }
-
-                zis.closeEntry();
-            }
-        }
-    }
-
     /**
      * Déboguer le contenu d'un ZIP
      */
@@ -358,21 +540,14 @@ public class ZipExportImportService {
     }
 
     /**
-     * Supprime récursivement un répertoire
+     * Supprime un fichier, sans échouer s'il ne peut pas l'être
      */
-    private void deleteDirectory(Path dir) throws IOException {
-        if (Files.exists(dir)) {
-            try (Stream<Path> paths = Files.walk(dir)) {
-                paths.sorted(Comparator.reverseOrder())
-                        .forEach(path -> {
-                            try {
-                                Files.delete(path);
-                            } catch (IOException e) {
-                                // Log error but continue
-                                System.err.println("Failed to delete: " + path + " - " + e.getMessage());
-                            }
-                        });
-            }
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Log error but continue
+            System.err.println("Failed to delete: " + path + " - " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.Sheet;
+
+/**
+ * Count, size and extent of a set of cells, accumulated as they are visited.
+ *
+ * The size of a value is its length in characters, which is its size in bytes for
+ * the ASCII text most cells hold and an approximation otherwise.
+ */
+public class CellStats implements CellVisitor {
+
+    private long count;
+
+    private long size;
+
+    private int maxRow = -1;
+
+    private int maxColumn = -1;
+
+    public CellStats() {
+    }
+
+    /**
+     * Aggregates of a query, null when no cell matched
+     */
+    public CellStats(Long count, Long size, Integer maxRow, Integer maxColumn) {
+        this.count = (count != null) ? count : 0;
+        this.size = (size != null) ? size : 0;
+        this.maxRow = (maxRow != null) ? maxRow : -1;
+        this.maxColumn = (maxColumn != null) ? maxColumn : -1;
+    }
+
+    public static int sizeOf(String value) {
+        return (value != null) ? value.length() : 0;
+    }
+
+    @Override
+    public void visit(int row, int column, String value, CellValueType type) {
+        count++;
+        size += sizeOf(value);
+        maxRow = Math.max(maxRow, row);
+        maxColumn = Math.max(maxColumn, column);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Highest row of the cells, -1 when there is none
+     */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * Highest column of the cells, -1 when there is none
+     */
+    public int getMaxColumn() {
+        return maxColumn;
+    }
+
+    /**
+     * Adds cells written to a sheet to its statistics. Rows must be positions.
+     */
+    public void addTo(Sheet sheet) {
+        sheet.setCellCount(sheet.getCellCount() + count);
+        sheet.setByteSize(sheet.getByteSize() + size);
+        sheet.setMaxRow(Math.max(sheet.getMaxRow(), maxRow));
+        sheet.setMaxColumn(Math.max(sheet.getMaxColumn(), maxColumn));
+
+        // The grid shown to clients grows to hold the cells
+        if (sheet.getRowCount() != null && sheet.getMaxRow() >= sheet.getRowCount()) {
+            sheet.setRowCount(sheet.getMaxRow() + 1);
+        }
+        if (sheet.getColumnCount() != null && sheet.getMaxColumn() >= sheet.getColumnCount()) {
+            sheet.setColumnCount(sheet.getMaxColumn() + 1);
+        }
+    }
+
+    /**
+     * Removes deleted cells from the count and size of a sheet. Its extent is left to the caller.
+     */
+    public void removeFrom(Sheet sheet) {
+        sheet.setCellCount(sheet.getCellCount() - count);
+        sheet.setByteSize(sheet.getByteSize() - size);
+    }
+}
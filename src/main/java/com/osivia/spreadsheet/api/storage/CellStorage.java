@@ -0,0 +1,95 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
+import com.osivia.spreadsheet.api.entity.Cell;
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import com.osivia.spreadsheet.api.repository.CellWriter;
+
+import java.util.Collection;
+
+/**
+ * Physical storage of the cells of a sheet.
+ *
+ * Rows are addressed by row id: translating positions through the sheet's
+ * row map is done by the caller, so a storage never moves cells between rows.
+ */
+public interface CellStorage {
+
+    CellStorageMode getMode();
+
+    /**
+     * Visits the cells of the row ids between firstRowId and lastRowId (inclusive), in row then column order
+     */
+    default void scan(Sheet sheet, int firstRowId, int lastRowId, CellVisitor visitor) {
+        scan(sheet, firstRowId, lastRowId, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits, in row then column order, at most limit cells of the row ids between firstRowId
+     * and lastRowId and of the columns between firstColumn and lastColumn (all inclusive).
+     * A limit of Integer.MAX_VALUE reads without bound, streaming the cells rather than loading them.
+     * @return the number of cells visited
+     */
+    int scan(Sheet sheet, int firstRowId, int lastRowId, int firstColumn, int lastColumn, int limit, CellVisitor visitor);
+
+    /**
+     * Highest row id holding a cell between firstRowId and lastRowId (inclusive), or null
+     */
+    Integer findMaxRowId(Sheet sheet, int firstRowId, int lastRowId);
+
+    /**
+     * Highest column holding a cell, or null
+     */
+    Integer findMaxColumn(Sheet sheet);
+
+    /**
+     * Count, size and extent of the cells of the row ids between firstRowId and lastRowId
+     * and of the columns between firstColumn and lastColumn (all inclusive)
+     */
+    default CellStats measure(Sheet sheet, int firstRowId, int lastRowId, int firstColumn, int lastColumn) {
+        CellStats stats = new CellStats();
+        scan(sheet, firstRowId, lastRowId, firstColumn, lastColumn, Integer.MAX_VALUE, stats);
+        return stats;
+    }
+
+    /**
+     * Count of the cells of a column and aggregates of its numeric values
+     */
+    ColumnStatsDTO columnStats(Sheet sheet, int column);
+
+    /**
+     * Opens a writer adding cells at coordinates that are known to be empty
+     */
+    CellWriter openWriter(Sheet sheet);
+
+    /**
+     * Inserts or replaces the values of the given cells. Coordinates must be distinct.
+     */
+    void upsertCells(Sheet sheet, Collection<Cell> cells);
+
+    /**
+     * Deletes the cells at the coordinates of the given cells
+     */
+    void deleteCells(Sheet sheet, Collection<Cell> cells);
+
+    /**
+     * Deletes the cells of the row ids between firstRowId and lastRowId (inclusive)
+     */
+    void deleteRows(Sheet sheet, int firstRowId, int lastRowId);
+
+    /**
+     * Deletes the cells of a column, without moving the other columns
+     */
+    void deleteColumn(Sheet sheet, int column);
+
+    /**
+     * Moves every cell at or right of fromColumn by delta columns
+     */
+    void shiftColumns(Sheet sheet, int fromColumn, int delta);
+
+    /**
+     * Deletes all cells of a sheet
+     */
+    void deleteAll(Sheet sheet);
+}
@@ -0,0 +1,39 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives the storage matching the mode of a sheet
+ */
+@Component
+public class CellStorageRegistry {
+
+    private final Map<CellStorageMode, CellStorage> storages = new EnumMap<>(CellStorageMode.class);
+
+    @Value("${spreadsheet.storage.default-mode:CELLS}")
+    private CellStorageMode defaultMode;
+
+    public CellStorageRegistry(List<CellStorage> storages) {
+        for (CellStorage storage : storages) {
+            this.storages.put(storage.getMode(), storage);
+        }
+    }
+
+    public CellStorage forSheet(Sheet sheet) {
+        return storages.get(sheet.getStorageMode());
+    }
+
+    /**
+     * Mode given to new sheets when none is requested
+     */
+    public CellStorageMode getDefaultMode() {
+        return defaultMode;
+    }
+}
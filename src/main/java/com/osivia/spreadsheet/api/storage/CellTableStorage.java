@@ -0,0 +1,119 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
+import com.osivia.spreadsheet.api.entity.Cell;
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import com.osivia.spreadsheet.api.repository.CellRepository;
+import com.osivia.spreadsheet.api.repository.CellWriter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * CELLS mode: one row of the cells table per non-empty cell
+ */
+@Component
+public class CellTableStorage implements CellStorage {
+
+    private final CellRepository cellRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CellTableStorage(CellRepository cellRepository) {
+        this.cellRepository = cellRepository;
+    }
+
+    @Override
+    public CellStorageMode getMode() {
+        return CellStorageMode.CELLS;
+    }
+
+    @Override
+    public int scan(Sheet sheet, int firstRowId, int lastRowId, int firstColumn, int lastColumn, int limit,
+                    CellVisitor visitor) {
+        if (limit == Integer.MAX_VALUE) {
+            // Unbounded reads go through a cursor, each cell being detached once visited so memory stays flat
+            int visited = 0;
+            try (Stream<Cell> cells = cellRepository.streamInRange(sheet, firstRowId, lastRowId, firstColumn, lastColumn)) {
+                Iterator<Cell> iterator = cells.iterator();
+                while (iterator.hasNext()) {
+                    Cell cell = iterator.next();
+                    visitor.visit(cell.getRowIndex(), cell.getColumnIndex(), cell.getValue(), cell.getValueType());
+                    entityManager.detach(cell);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+
+        List<Cell> cells = cellRepository.findInRange(sheet, firstRowId, lastRowId, firstColumn, lastColumn,
+            PageRequest.of(0, limit));
+        for (Cell cell : cells) {
+            visitor.visit(cell.getRowIndex(), cell.getColumnIndex(), cell.getValue(), cell.getValueType());
+        }
+        return cells.size();
+    }
+
+    @Override
+    public Integer findMaxRowId(Sheet sheet, int firstRowId, int lastRowId) {
+        return cellRepository.findMaxRowIndexInRange(sheet, firstRowId, lastRowId);
+    }
+
+    @Override
+    public Integer findMaxColumn(Sheet sheet) {
+        return cellRepository.findMaxColumnIndex(sheet);
+    }
+
+    @Override
+    public CellStats measure(Sheet sheet, int firstRowId, int lastRowId, int firstColumn, int lastColumn) {
+        return cellRepository.measureRange(sheet, firstRowId, lastRowId, firstColumn, lastColumn);
+    }
+
+    @Override
+    public ColumnStatsDTO columnStats(Sheet sheet, int column) {
+        return cellRepository.findColumnStats(sheet, column);
+    }
+
+    @Override
+    public CellWriter openWriter(Sheet sheet) {
+        return cellRepository.openBulkWriter(sheet);
+    }
+
+    @Override
+    public void upsertCells(Sheet sheet, Collection<Cell> cells) {
+        cellRepository.upsertCells(sheet, cells);
+    }
+
+    @Override
+    public void deleteCells(Sheet sheet, Collection<Cell> cells) {
+        cellRepository.deleteCells(sheet, cells);
+    }
+
+    @Override
+    public void deleteRows(Sheet sheet, int firstRowId, int lastRowId) {
+        cellRepository.deleteRows(sheet, firstRowId, lastRowId);
+    }
+
+    @Override
+    public void deleteColumn(Sheet sheet, int column) {
+        cellRepository.deleteColumn(sheet, column);
+    }
+
+    @Override
+    public void shiftColumns(Sheet sheet, int fromColumn, int delta) {
+        cellRepository.shiftColumns(sheet, fromColumn, delta);
+    }
+
+    @Override
+    public void deleteAll(Sheet sheet) {
+        cellRepository.deleteBySheet(sheet);
+    }
+}
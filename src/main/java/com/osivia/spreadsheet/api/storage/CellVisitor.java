@@ -0,0 +1,12 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+
+/**
+ * Receives cells in row then column order. Rows are row ids when read from a storage,
+ * and positions once translated through the sheet's row map.
+ */
+@FunctionalInterface
+public interface CellVisitor {
+    void visit(int row, int column, String value, CellValueType type);
+}
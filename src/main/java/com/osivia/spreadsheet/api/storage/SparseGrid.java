@@ -0,0 +1,316 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cells held in memory by position, without one object per cell.
+ *
+ * A (row, column) pair is packed into a long key, found through an open addressing
+ * table of entry indices (linear probing). Entries are parallel primitive arrays and
+ * the values are UTF-8 bytes appended to one arena, on the heap or, optionally, in a
+ * direct buffer outside of it. Overwriting a cell appends its new value and leaves the
+ * old bytes unused, which suits the fill once, read many use of exports and caches.
+ *
+ * Not thread-safe while it is filled; once filled it can be read by several threads.
+ */
+public class SparseGrid {
+
+    private static final int FREE = -1;
+
+    private static final CellValueType[] TYPES = CellValueType.values();
+
+    private final boolean offHeap;
+
+    // Entry index of each slot, FREE when unused
+    private int[] table;
+
+    private long[] keys;
+
+    private int[] offsets;
+
+    private int[] lengths;
+
+    private byte[] types;
+
+    private ByteBuffer arena;
+
+    private int arenaSize;
+
+    private int size;
+
+    private int maxRow = -1;
+
+    private int maxColumn = -1;
+
+    // Whether entries were added in row then column order, so that they need no sorting
+    private boolean ordered = true;
+
+    // Entry indices by position, built on the first ordered read when entries were not added in order
+    private volatile int[] order;
+
+    public SparseGrid() {
+        this(16, false);
+    }
+
+    /**
+     * @param expectedCells number of cells to size the structures for
+     * @param offHeap keep the values in a direct buffer outside of the Java heap
+     */
+    public SparseGrid(int expectedCells, boolean offHeap) {
+        this.offHeap = offHeap;
+        int capacity = Math.max(expectedCells, 16);
+        table = new int[tableSizeFor(capacity)];
+        Arrays.fill(table, FREE);
+        keys = new long[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        types = new byte[capacity];
+        arena = allocate(capacity * 8);
+    }
+
+    public static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    public static int row(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int column(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Sets the value of a cell, replacing the previous one
+     */
+    public void put(int row, int column, String value, CellValueType type) {
+        long key = key(row, column);
+        int slot = slotOf(key);
+        int entry = table[slot];
+        if (entry == FREE) {
+            if (size == keys.length) {
+                growEntries();
+            }
+            entry = size++;
+            keys[entry] = key;
+            if (entry > 0 && key <= keys[entry - 1]) {
+                ordered = false;
+            }
+            if ((long) size * 2 > table.length) {
+                rehash(table.length * 2);
+            } else {
+                table[slot] = entry;
+            }
+            maxRow = Math.max(maxRow, row);
+            maxColumn = Math.max(maxColumn, column);
+        }
+
+        if (value == null) {
+            lengths[entry] = -1;
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureArena(bytes.length);
+            arena.position(arenaSize);
+            arena.put(bytes);
+            offsets[entry] = arenaSize;
+            lengths[entry] = bytes.length;
+            arenaSize += bytes.length;
+        }
+        types[entry] = (byte) type.ordinal();
+        order = null;
+    }
+
+    /**
+     * Value of a cell, or null if the cell is empty
+     */
+    public String get(int row, int column) {
+        int entry = table[slotOf(key(row, column))];
+        return (entry != FREE) ? value(arena.duplicate(), entry) : null;
+    }
+
+    /**
+     * Type of a cell, or null if the cell is empty
+     */
+    public CellValueType getType(int row, int column) {
+        int entry = table[slotOf(key(row, column))];
+        return (entry != FREE) ? TYPES[types[entry]] : null;
+    }
+
+    public boolean contains(int row, int column) {
+        return table[slotOf(key(row, column))] != FREE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Highest row holding a cell, -1 when empty
+     */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * Highest column holding a cell, -1 when empty
+     */
+    public int getMaxColumn() {
+        return maxColumn;
+    }
+
+    /**
+     * Visits every cell in row then column order
+     */
+    public void forEach(CellVisitor visitor) {
+        forEach(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits in row then column order at most max cells of the rows fromRow..toRow and columns fromCol..toCol
+     * @return the number of cells visited
+     */
+    public int forEach(int fromRow, int toRow, int fromCol, int toCol, int max, CellVisitor visitor) {
+        int[] sorted = sortedEntries();
+        ByteBuffer values = arena.duplicate();
+        int visited = 0;
+        for (int i = firstIndexOfRow(sorted, fromRow); i < size && visited < max; i++) {
+            long key = keys[entry(sorted, i)];
+            int row = row(key);
+            int column = column(key);
+            if (row > toRow) {
+                break;
+            }
+            if (column >= fromCol && column <= toCol) {
+                int entry = entry(sorted, i);
+                visitor.visit(row, column, value(values, entry), TYPES[types[entry]]);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Estimated bytes used by the grid, values included
+     */
+    public long memoryUsage() {
+        return 4L * table.length + 17L * keys.length + arena.capacity() + ((order != null) ? 4L * order.length : 0);
+    }
+
+    private String value(ByteBuffer values, int entry) {
+        int length = lengths[entry];
+        if (length < 0) {
+            return null;
+        }
+        if (values.hasArray()) {
+            return new String(values.array(), values.arrayOffset() + offsets[entry], length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        values.position(offsets[entry]);
+        values.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Entry indices sorted by key, or null when entries are already in that order
+     */
+    private int[] sortedEntries() {
+        if (ordered) {
+            return null;
+        }
+        int[] sorted = order;
+        if (sorted == null) {
+            long[] sortedKeys = Arrays.copyOf(keys, size);
+            Arrays.sort(sortedKeys);
+            sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = table[slotOf(sortedKeys[i])];
+            }
+            order = sorted;
+        }
+        return sorted;
+    }
+
+    private static int entry(int[] sorted, int index) {
+        return (sorted != null) ? sorted[index] : index;
+    }
+
+    private int firstIndexOfRow(int[] sorted, int row) {
+        long key = key(row, 0);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[entry(sorted, mid)] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Slot holding the key, or the free slot where it would be added
+     */
+    private int slotOf(long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != FREE && keys[table[slot]] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        // Mix row and column bits so that runs of rows or columns spread over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        Arrays.fill(table, FREE);
+        for (int entry = 0; entry < size; entry++) {
+            table[slotOf(keys[entry])] = entry;
+        }
+    }
+
+    private void growEntries() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+
+    private void ensureArena(int length) {
+        if (arenaSize + length > arena.capacity()) {
+            long capacity = Math.max((long) arena.capacity() * 2, (long) arenaSize + length);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Sparse grid values exceed 2 GB");
+            }
+            ByteBuffer grown = allocate((int) capacity);
+            ByteBuffer used = arena.duplicate();
+            used.position(0);
+            used.limit(arenaSize);
+            grown.put(used);
+            arena = grown;
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int tableSizeFor(int entries) {
+        int size = 16;
+        while (size < entries * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,156 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cells of a block of ROWS x COLUMNS, decoded from or encoded to the blob of a CellTile.
+ *
+ * Blob format, deflate-compressed: format byte, cell count, then for each cell in
+ * row-major order its offset in the tile (localRow * COLUMNS + localColumn) as a
+ * short, its value type as a byte and its UTF-8 value prefixed by its length.
+ */
+final class Tile {
+
+    static final int ROWS = 256;
+
+    static final int COLUMNS = 32;
+
+    private static final byte FORMAT = 2;
+
+    private static final CellValueType[] TYPES = CellValueType.values();
+
+    /**
+     * Receives the cells of a tile in row-major order
+     */
+    interface LocalCellVisitor {
+        void visit(int localRow, int localColumn, String value, CellValueType type);
+    }
+
+    private final String[] values = new String[ROWS * COLUMNS];
+
+    private final byte[] types = new byte[ROWS * COLUMNS];
+
+    private int count;
+
+    String get(int localRow, int localColumn) {
+        return values[localRow * COLUMNS + localColumn];
+    }
+
+    CellValueType getType(int localRow, int localColumn) {
+        return TYPES[types[localRow * COLUMNS + localColumn]];
+    }
+
+    /**
+     * Sets a value, null clears the cell
+     */
+    void set(int localRow, int localColumn, String value, CellValueType type) {
+        int offset = localRow * COLUMNS + localColumn;
+        if (values[offset] == null && value != null) {
+            count++;
+        } else if (values[offset] != null && value == null) {
+            count--;
+        }
+        values[offset] = value;
+        types[offset] = (value != null) ? (byte) type.ordinal() : 0;
+    }
+
+    void clear(int localRow, int localColumn) {
+        set(localRow, localColumn, null, null);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    boolean hasRow(int localRow) {
+        for (int offset = localRow * COLUMNS; offset < (localRow + 1) * COLUMNS; offset++) {
+            if (values[offset] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clearRows(int fromLocalRow, int toLocalRow) {
+        for (int localRow = fromLocalRow; localRow <= toLocalRow; localRow++) {
+            for (int localColumn = 0; localColumn < COLUMNS; localColumn++) {
+                clear(localRow, localColumn);
+            }
+        }
+    }
+
+    void clearColumn(int localColumn) {
+        for (int localRow = 0; localRow < ROWS; localRow++) {
+            clear(localRow, localColumn);
+        }
+    }
+
+    /**
+     * Copies the cells of another tile over the cells of this one
+     */
+    void merge(Tile other) {
+        other.forEach(this::set);
+    }
+
+    void forEach(LocalCellVisitor visitor) {
+        if (count == 0) {
+            return;
+        }
+        for (int offset = 0; offset < values.length; offset++) {
+            if (values[offset] != null) {
+                visitor.visit(offset / COLUMNS, offset % COLUMNS, values[offset], TYPES[types[offset]]);
+            }
+        }
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(FORMAT);
+            out.writeInt(count);
+            for (int offset = 0; offset < values.length; offset++) {
+                if (values[offset] != null) {
+                    byte[] value = values[offset].getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(offset);
+                    out.writeByte(types[offset]);
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Tile decode(byte[] data) {
+        Tile tile = new Tile();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unknown tile format " + format);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int offset = in.readUnsignedShort();
+                tile.types[offset] = in.readByte();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                tile.values[offset] = new String(value, StandardCharsets.UTF_8);
+            }
+            tile.count = count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tile;
+    }
+}
@@ -0,0 +1,398 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
+import com.osivia.spreadsheet.api.entity.Cell;
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+import com.osivia.spreadsheet.api.entity.CellTile;
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.entity.CellValues;
+import com.osivia.spreadsheet.api.entity.Sheet;
+import com.osivia.spreadsheet.api.repository.CellTileRepository;
+import com.osivia.spreadsheet.api.repository.CellTileRepository.TileData;
+import com.osivia.spreadsheet.api.repository.CellWriter;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * TILES mode: cells are packed by blocks of Tile.ROWS x Tile.COLUMNS, each block
+ * stored as one compressed row of the cell_tiles table. Reading a range loads a few
+ * blobs instead of one row per cell; editing a cell rewrites its whole tile.
+ *
+ * Tiles are processed one band of rows (tiles sharing the same tileRow) at a time,
+ * so memory stays bounded by the width of the sheet.
+ */
+@Component
+public class TiledCellStorage implements CellStorage {
+
+    private static final int MAX_TILE_ROW = Integer.MAX_VALUE / Tile.ROWS;
+
+    /** Tiles kept in memory by a writer before they are merged into the table */
+    private static final int WRITER_PENDING_TILES = 128;
+
+    private final CellTileRepository tileRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TiledCellStorage(CellTileRepository tileRepository) {
+        this.tileRepository = tileRepository;
+    }
+
+    @Override
+    public CellStorageMode getMode() {
+        return CellStorageMode.TILES;
+    }
+
+    @Override
+    public int scan(Sheet sheet, int firstRowId, int lastRowId, int firstColumn, int lastColumn, int limit,
+                    CellVisitor visitor) {
+        if (firstRowId > lastRowId || limit <= 0) {
+            return 0;
+        }
+
+        int visited = 0;
+        for (Integer tileRow : tileRepository.findTileRows(sheet, firstRowId / Tile.ROWS, lastRowId / Tile.ROWS)) {
+            List<TileData> band = tileRepository.readBand(sheet, tileRow, firstColumn / Tile.COLUMNS, lastColumn / Tile.COLUMNS);
+            Tile[] tiles = new Tile[band.size()];
+            for (int i = 0; i < tiles.length; i++) {
+                tiles[i] = Tile.decode(band.get(i).getData());
+            }
+
+            int bandStart = tileRow * Tile.ROWS;
+            int fromLocalRow = Math.max(firstRowId - bandStart, 0);
+            int toLocalRow = Math.min(lastRowId - bandStart, Tile.ROWS - 1);
+            for (int localRow = fromLocalRow; localRow <= toLocalRow; localRow++) {
+                for (int i = 0; i < tiles.length; i++) {
+                    int columnStart = band.get(i).getTileColumn() * Tile.COLUMNS;
+                    int fromLocalColumn = Math.max(firstColumn - columnStart, 0);
+                    int toLocalColumn = (int) Math.min((long) lastColumn - columnStart, Tile.COLUMNS - 1);
+                    for (int localColumn = fromLocalColumn; localColumn <= toLocalColumn; localColumn++) {
+                        String value = tiles[i].get(localRow, localColumn);
+                        if (value != null) {
+                            visitor.visit(bandStart + localRow, columnStart + localColumn, value,
+                                tiles[i].getType(localRow, localColumn));
+                            if (++visited == limit) {
+                                return visited;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    @Override
+    public Integer findMaxRowId(Sheet sheet, int firstRowId, int lastRowId) {
+        if (firstRowId > lastRowId) {
+            return null;
+        }
+
+        List<Integer> tileRows = tileRepository.findTileRows(sheet, firstRowId / Tile.ROWS, lastRowId / Tile.ROWS);
+        for (int t = tileRows.size() - 1; t >= 0; t--) {
+            int tileRow = tileRows.get(t);
+            List<Tile> tiles = new ArrayList<>();
+            for (TileData data : tileRepository.readBand(sheet, tileRow)) {
+                tiles.add(Tile.decode(data.getData()));
+            }
+
+            int bandStart = tileRow * Tile.ROWS;
+            int fromLocalRow = Math.max(firstRowId - bandStart, 0);
+            int toLocalRow = Math.min(lastRowId - bandStart, Tile.ROWS - 1);
+            for (int localRow = toLocalRow; localRow >= fromLocalRow; localRow--) {
+                for (Tile tile : tiles) {
+                    if (tile.hasRow(localRow)) {
+                        return bandStart + localRow;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Integer findMaxColumn(Sheet sheet) {
+        Integer maxTileColumn = tileRepository.findMaxTileColumn(sheet);
+        if (maxTileColumn == null) {
+            return null;
+        }
+
+        // Tiles without cells are deleted, so the rightmost tile column holds the highest column
+        int[] maxLocalColumn = {-1};
+        for (TileData data : tileRepository.readColumn(sheet, maxTileColumn)) {
+            Tile.decode(data.getData()).forEach((localRow, localColumn, value, type) ->
+                maxLocalColumn[0] = Math.max(maxLocalColumn[0], localColumn));
+        }
+        return maxTileColumn * Tile.COLUMNS + maxLocalColumn[0];
+    }
+
+    @Override
+    public ColumnStatsDTO columnStats(Sheet sheet, int column) {
+        long count = 0;
+        long numericCount = 0;
+        double sum = 0;
+        Double min = null;
+        Double max = null;
+
+        int localColumn = column % Tile.COLUMNS;
+        for (TileData data : tileRepository.readColumn(sheet, column / Tile.COLUMNS)) {
+            Tile tile = Tile.decode(data.getData());
+            for (int localRow = 0; localRow < Tile.ROWS; localRow++) {
+                String value = tile.get(localRow, localColumn);
+                if (value == null) {
+                    continue;
+                }
+                count++;
+                Double number = CellValues.numericValue(value, tile.getType(localRow, localColumn));
+                if (number != null) {
+                    numericCount++;
+                    sum += number;
+                    min = (min == null) ? number : Math.min(min, number);
+                    max = (max == null) ? number : Math.max(max, number);
+                }
+            }
+        }
+        return new ColumnStatsDTO(count, numericCount, (numericCount > 0) ? sum : null, min, max);
+    }
+
+    @Override
+    public CellWriter openWriter(Sheet sheet) {
+        return new TileCellWriter(sheet);
+    }
+
+    @Override
+    public void upsertCells(Sheet sheet, Collection<Cell> cells) {
+        for (Map.Entry<Long, List<Cell>> entry : groupByTile(cells).entrySet()) {
+            updateTile(sheet, tileRow(entry.getKey()), tileColumn(entry.getKey()), tile -> {
+                for (Cell cell : entry.getValue()) {
+                    tile.set(cell.getRowIndex() % Tile.ROWS, cell.getColumnIndex() % Tile.COLUMNS,
+                        cell.getValue(), cell.getValueType());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void deleteCells(Sheet sheet, Collection<Cell> cells) {
+        for (Map.Entry<Long, List<Cell>> entry : groupByTile(cells).entrySet()) {
+            updateTile(sheet, tileRow(entry.getKey()), tileColumn(entry.getKey()), tile -> {
+                for (Cell cell : entry.getValue()) {
+                    tile.clear(cell.getRowIndex() % Tile.ROWS, cell.getColumnIndex() % Tile.COLUMNS);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void deleteRows(Sheet sheet, int firstRowId, int lastRowId) {
+        if (firstRowId > lastRowId) {
+            return;
+        }
+
+        // Bands fully covered are dropped without being decoded, the bands at both ends are rewritten
+        int firstBand = firstRowId / Tile.ROWS;
+        int lastBand = lastRowId / Tile.ROWS;
+        int firstFullBand = (firstRowId % Tile.ROWS == 0) ? firstBand : firstBand + 1;
+        int lastFullBand = (lastRowId % Tile.ROWS == Tile.ROWS - 1) ? lastBand : lastBand - 1;
+
+        for (int tileRow : new TreeSet<>(Arrays.asList(firstBand, lastBand))) {
+            if (tileRow < firstFullBand || tileRow > lastFullBand) {
+                int bandStart = tileRow * Tile.ROWS;
+                int fromLocalRow = Math.max(firstRowId - bandStart, 0);
+                int toLocalRow = Math.min(lastRowId - bandStart, Tile.ROWS - 1);
+                List<CellTile> band = tileRepository.findBand(sheet, tileRow);
+                for (CellTile entity : band) {
+                    Tile tile = Tile.decode(entity.getData());
+                    tile.clearRows(fromLocalRow, toLocalRow);
+                    store(sheet, entity, tileRow, entity.getTileColumn(), tile);
+                }
+                release(band);
+            }
+        }
+
+        if (firstFullBand <= lastFullBand) {
+            tileRepository.deleteBands(sheet, firstFullBand, lastFullBand);
+        }
+    }
+
+    @Override
+    public void deleteColumn(Sheet sheet, int column) {
+        List<CellTile> tiles = tileRepository.findBySheetAndTileColumn(sheet, column / Tile.COLUMNS);
+        for (CellTile entity : tiles) {
+            Tile tile = Tile.decode(entity.getData());
+            tile.clearColumn(column % Tile.COLUMNS);
+            store(sheet, entity, entity.getTileRow(), entity.getTileColumn(), tile);
+        }
+        release(tiles);
+    }
+
+    @Override
+    public void shiftColumns(Sheet sheet, int fromColumn, int delta) {
+        // Cells cross tile boundaries, so every tile from the first one touched is rebuilt, band by band
+        int firstTileColumn = Math.max(Math.min(fromColumn, fromColumn + delta), 0) / Tile.COLUMNS;
+
+        for (Integer tileRow : tileRepository.findTileRows(sheet, 0, MAX_TILE_ROW)) {
+            List<CellTile> band = tileRepository.findBandFrom(sheet, tileRow, firstTileColumn);
+            Map<Integer, Tile> shifted = new TreeMap<>();
+            for (CellTile entity : band) {
+                int columnStart = entity.getTileColumn() * Tile.COLUMNS;
+                Tile.decode(entity.getData()).forEach((localRow, localColumn, value, type) -> {
+                    int column = columnStart + localColumn;
+                    if (column >= fromColumn) {
+                        column += delta;
+                    }
+                    shifted.computeIfAbsent(column / Tile.COLUMNS, c -> new Tile())
+                        .set(localRow, column % Tile.COLUMNS, value, type);
+                });
+            }
+
+            List<CellTile> written = new ArrayList<>(band);
+            for (CellTile entity : band) {
+                Tile tile = shifted.remove(entity.getTileColumn());
+                store(sheet, entity, tileRow, entity.getTileColumn(), (tile != null) ? tile : new Tile());
+            }
+            for (Map.Entry<Integer, Tile> entry : shifted.entrySet()) {
+                written.add(store(sheet, null, tileRow, entry.getKey(), entry.getValue()));
+            }
+            release(written);
+        }
+    }
+
+    @Override
+    public void deleteAll(Sheet sheet) {
+        tileRepository.deleteBySheet(sheet);
+    }
+
+    /**
+     * Loads a tile (or starts an empty one), applies a change and stores it back
+     */
+    private void updateTile(Sheet sheet, int tileRow, int tileColumn, Consumer<Tile> change) {
+        CellTile entity = tileRepository.findBySheetAndTileRowAndTileColumn(sheet, tileRow, tileColumn).orElse(null);
+        Tile tile = (entity != null) ? Tile.decode(entity.getData()) : new Tile();
+        change.accept(tile);
+        store(sheet, entity, tileRow, tileColumn, tile);
+    }
+
+    /**
+     * Saves a tile, deleting its row when it no longer holds any cell
+     * @return the saved entity, or null when deleted
+     */
+    private CellTile store(Sheet sheet, CellTile entity, int tileRow, int tileColumn, Tile tile) {
+        if (tile.isEmpty()) {
+            if (entity != null) {
+                tileRepository.delete(entity);
+            }
+            return null;
+        }
+
+        if (entity == null) {
+            entity = new CellTile();
+            entity.setSheet(sheet);
+            entity.setTileRow(tileRow);
+            entity.setTileColumn(tileColumn);
+        }
+        entity.setData(tile.encode());
+        entity.setCellCount(tile.getCount());
+        return tileRepository.save(entity);
+    }
+
+    /**
+     * Writes pending changes and detaches processed tiles, so their blobs do not pile up in the persistence context
+     */
+    private void release(Collection<CellTile> tiles) {
+        entityManager.flush();
+        tiles.forEach(entityManager::detach);
+    }
+
+    private static Map<Long, List<Cell>> groupByTile(Collection<Cell> cells) {
+        Map<Long, List<Cell>> groups = new LinkedHashMap<>();
+        for (Cell cell : cells) {
+            groups.computeIfAbsent(tileKey(cell.getRowIndex() / Tile.ROWS, cell.getColumnIndex() / Tile.COLUMNS),
+                k -> new ArrayList<>()).add(cell);
+        }
+        return groups;
+    }
+
+    private static long tileKey(int tileRow, int tileColumn) {
+        return ((long) tileRow << 32) | (tileColumn & 0xFFFFFFFFL);
+    }
+
+    private static int tileRow(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int tileColumn(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Groups new cells by tile and merges them into the table when enough tiles are pending
+     */
+    private class TileCellWriter implements CellWriter {
+
+        private final Sheet sheet;
+
+        private final Map<Long, Tile> pending = new LinkedHashMap<>();
+
+        private long count;
+
+        TileCellWriter(Sheet sheet) {
+            this.sheet = sheet;
+        }
+
+        @Override
+        public void add(int row, int column, String value, CellValueType type) {
+            long key = tileKey(row / Tile.ROWS, column / Tile.COLUMNS);
+            Tile tile = pending.get(key);
+            if (tile == null) {
+                if (pending.size() >= WRITER_PENDING_TILES) {
+                    flush();
+                }
+                tile = new Tile();
+                pending.put(key, tile);
+            }
+            tile.set(row % Tile.ROWS, column % Tile.COLUMNS, value, type);
+            count++;
+        }
+
+        @Override
+        public void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<CellTile> written = new ArrayList<>();
+            for (Map.Entry<Long, Tile> entry : pending.entrySet()) {
+                int tileRow = tileRow(entry.getKey());
+                int tileColumn = tileColumn(entry.getKey());
+                CellTile entity = tileRepository.findBySheetAndTileRowAndTileColumn(sheet, tileRow, tileColumn).orElse(null);
+                Tile tile = entry.getValue();
+                if (entity != null) {
+                    Tile existing = Tile.decode(entity.getData());
+                    existing.merge(tile);
+                    tile = existing;
+                }
+                CellTile saved = store(sheet, entity, tileRow, tileColumn, tile);
+                if (saved != null) {
+                    written.add(saved);
+                }
+            }
+            pending.clear();
+            release(written);
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
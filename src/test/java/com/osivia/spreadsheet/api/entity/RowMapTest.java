@@ -0,0 +1,156 @@
+package com.osivia.spreadsheet.api.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowMapTest {
+
+    @Test
+    void identityMapsPositionsToThemselvesAndEncodesToNull() {
+        RowMap map = RowMap.decode(null);
+
+        assertTrue(map.isIdentity());
+        assertNull(map.encode());
+        assertEquals(0, map.rowIdAt(0));
+        assertEquals(123456, map.rowIdFor(123456));
+        assertThrows(IllegalStateException.class, () -> map.insert(0, 1));
+    }
+
+    @Test
+    void insertSplitsASegmentAndGivesFreshRowIds() {
+        RowMap map = RowMap.identity();
+        map.materialize(5);
+
+        map.insert(2, 2);
+
+        assertEquals("7|0:2,5:2,2:3", map.encode());
+        assertEquals(Arrays.asList(0, 1, 5, 6, 2, 3, 4), rowIds(map));
+    }
+
+    @Test
+    void insertPastTheLastRowChangesNothing() {
+        RowMap map = RowMap.identity();
+        map.materialize(3);
+
+        map.insert(3, 4);
+
+        assertEquals("3|0:3", map.encode());
+    }
+
+    @Test
+    void removeReturnsTheRemovedRowIdRanges() {
+        RowMap map = RowMap.decode("7|0:2,5:2,2:3");
+
+        List<int[]> removed = map.remove(1, 3);
+
+        assertEquals(2, removed.size());
+        assertArrayEquals(new int[]{1, 1}, removed.get(0));
+        assertArrayEquals(new int[]{5, 6}, removed.get(1));
+        assertEquals("7|0:1,2:3", map.encode());
+        assertEquals(Arrays.asList(0, 2, 3, 4), rowIds(map));
+    }
+
+    @Test
+    void removePastTheEndIsClipped() {
+        RowMap map = RowMap.identity();
+        map.materialize(3);
+
+        List<int[]> removed = map.remove(2, Integer.MAX_VALUE);
+
+        assertEquals(1, removed.size());
+        assertArrayEquals(new int[]{2, 2}, removed.get(0));
+        assertEquals(2, map.size());
+        assertEquals(0, map.remove(5, 1).size());
+    }
+
+    @Test
+    void rowIdForExtendsTheMapWithNewRowIds() {
+        RowMap map = RowMap.decode("4|2:2,0:2");
+
+        assertEquals(-1, map.rowIdAt(6));
+        assertEquals(5, map.rowIdFor(5));
+
+        assertEquals(Arrays.asList(2, 3, 0, 1, 4, 5), rowIds(map));
+        assertEquals("6|2:2,0:2,4:2", map.encode());
+    }
+
+    @Test
+    void segmentsAreVisitedInPositionOrderWithinBounds() {
+        RowMap map = RowMap.decode("7|0:2,5:2,2:3");
+        List<String> segments = new ArrayList<>();
+
+        map.forEachSegment(1, 5, (position, firstRowId, length) -> segments.add(position + ":" + firstRowId + "x" + length));
+
+        assertEquals(Arrays.asList("1:1x1", "2:5x2", "4:2x2"), segments);
+    }
+
+    @Test
+    void editsMatchAListOfRowIds() {
+        Random random = new Random(42);
+        RowMap map = RowMap.identity();
+        map.materialize(50);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.add(i);
+        }
+        int nextRowId = 50;
+
+        for (int step = 0; step < 2000; step++) {
+            int position = random.nextInt(expected.size() + 5);
+            int rows = 1 + random.nextInt(4);
+            if (random.nextBoolean()) {
+                map.insert(position, rows);
+                if (position < expected.size()) {
+                    for (int i = 0; i < rows; i++) {
+                        expected.add(position + i, nextRowId++);
+                    }
+                }
+            } else {
+                List<Integer> removedIds = new ArrayList<>();
+                for (int[] range : map.remove(position, rows)) {
+                    for (int id = range[0]; id <= range[1]; id++) {
+                        removedIds.add(id);
+                    }
+                }
+                List<Integer> removedExpected = new ArrayList<>();
+                for (int i = 0; i < rows && position < expected.size(); i++) {
+                    removedExpected.add(expected.remove(position));
+                }
+                assertEquals(removedExpected, removedIds);
+            }
+            if (expected.isEmpty()) {
+                map.rowIdFor(9);
+                for (int i = 0; i < 10; i++) {
+                    expected.add(nextRowId++);
+                }
+            }
+
+            assertEquals(expected, rowIds(map));
+            assertEquals(expected, rowIds(RowMap.decode(map.encode())));
+        }
+    }
+
+    private static List<Integer> rowIds(RowMap map) {
+        List<Integer> rowIds = new ArrayList<>();
+        map.forEachSegment(0, Integer.MAX_VALUE - 1, (position, firstRowId, length) -> {
+            assertEquals(rowIds.size(), position);
+            for (int i = 0; i < length; i++) {
+                rowIds.add(firstRowId + i);
+            }
+        });
+        for (int position = 0; position < rowIds.size(); position++) {
+            assertEquals((int) rowIds.get(position), map.rowIdAt(position));
+        }
+        return rowIds;
+    }
+}
@@ -0,0 +1,95 @@
+package com.osivia.spreadsheet.api.repository;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CopyCellWriterTest {
+
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+
+    private DataSource dataSource;
+
+    private Connection connection;
+
+    private CopyManager copyManager;
+
+    private CopyIn copyIn;
+
+    @BeforeEach
+    void mockCopy() throws Exception {
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        copyManager = mock(CopyManager.class);
+        copyIn = mock(CopyIn.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+        doAnswer(invocation -> {
+            copied.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    void valuesAreEscapedInTheCopyTextFormat() throws Exception {
+        try (CopyCellWriter writer = new CopyCellWriter(dataSource, 7L)) {
+            writer.add(0, 1, "a\tb\\c\nd\re €", CellValueType.STRING);
+            writer.add(2, 3, "1.5", CellValueType.NUMBER);
+            writer.add(4, 5, "\\N", CellValueType.STRING);
+        }
+
+        String[] lines = copied.toString(StandardCharsets.UTF_8.name()).split("\n", -1);
+        assertEquals(4, lines.length);
+        assertEquals("7\t0\t1\ta\\tb\\\\c\\nd\\re €\tSTRING\t\\N\t\\N\t\\N", lines[0]);
+        assertTrue(lines[1].startsWith("7\t2\t3\t1.5\tNUMBER\t1.5\t"), lines[1]);
+        // A value spelling the null marker stays a value
+        assertTrue(lines[2].startsWith("7\t4\t5\t\\\\N\tSTRING\t"), lines[2]);
+        assertEquals("", lines[3]);
+        verify(copyIn).endCopy();
+        verify(connection).close();
+    }
+
+    @Test
+    void largeWritesAreSentInChunksOnOneCopy() throws Exception {
+        CopyCellWriter writer = new CopyCellWriter(dataSource, 1L);
+        for (int row = 0; row < 10000; row++) {
+            writer.add(row, 0, "value " + row, CellValueType.STRING);
+        }
+        writer.close();
+
+        assertEquals(10000, writer.getCount());
+        assertEquals(10000, copied.toString(StandardCharsets.UTF_8.name()).split("\n").length);
+        verify(copyManager, times(1)).copyIn(anyString());
+        verify(copyIn, times(1)).endCopy();
+    }
+
+    @Test
+    void nothingWrittenStartsNoCopy() throws Exception {
+        new CopyCellWriter(dataSource, 1L).close();
+
+        verify(dataSource, never()).getConnection();
+    }
+}
@@ -0,0 +1,112 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import com.osivia.spreadsheet.api.storage.CellVisitor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvEncoderTest {
+
+    @Test
+    void linesArePaddedToTheLastColumn() throws IOException {
+        String csv = encode(',', 0, 0, 3, visitor -> {
+            visitor.visit(0, 0, "A1", CellValueType.STRING);
+            visitor.visit(0, 2, "C1", CellValueType.STRING);
+            visitor.visit(1, 3, "D2", CellValueType.STRING);
+        });
+
+        assertEquals("A1,,C1,\n,,,D2\n", csv);
+    }
+
+    @Test
+    void rowsWithoutCellsAreEmptyLines() throws IOException {
+        String csv = encode(',', 0, 0, 1, visitor -> {
+            visitor.visit(1, 1, "B2", CellValueType.STRING);
+            visitor.visit(4, 0, "A5", CellValueType.STRING);
+        });
+
+        assertEquals(",\n,B2\n,\n,\nA5,\n", csv);
+    }
+
+    @Test
+    void noCellGivesOneEmptyLine() throws IOException {
+        assertEquals(",,\n", encode(',', 0, 0, 2, visitor -> { }));
+        assertEquals("\n", encode(',', 0, 0, 0, visitor -> { }));
+    }
+
+    @Test
+    void valuesNeedingQuotesAreQuotedWithTheirQuotesDoubled() throws IOException {
+        String csv = encode(',', 0, 0, 4, visitor -> {
+            visitor.visit(0, 0, "a,b", CellValueType.STRING);
+            visitor.visit(0, 1, "say \"hi\"", CellValueType.STRING);
+            visitor.visit(0, 2, "two\nlines", CellValueType.STRING);
+            visitor.visit(0, 3, "cr\r", CellValueType.STRING);
+            visitor.visit(0, 4, "a;b\t", CellValueType.STRING);
+        });
+
+        assertEquals("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"cr\r\",a;b\t\n", csv);
+        assertEquals("\"\"\"\"\n", encode(',', 0, 0, 0, visitor -> visitor.visit(0, 0, "\"", CellValueType.STRING)));
+    }
+
+    @Test
+    void onlyTheDelimiterInUseIsQuoted() throws IOException {
+        String csv = encode('\t', 0, 0, 2, visitor -> {
+            visitor.visit(0, 0, "a,b", CellValueType.STRING);
+            visitor.visit(0, 2, "c\td", CellValueType.STRING);
+        });
+
+        assertEquals("a,b\t\t\"c\td\"\n", csv);
+    }
+
+    @Test
+    void longRunsOfEmptyFieldsAreWrittenWhole() throws IOException {
+        String csv = encode(',', 0, 0, 2999, visitor -> {
+            visitor.visit(0, 2500, "x", CellValueType.STRING);
+            visitor.visit(1, 0, "y", CellValueType.STRING);
+        });
+
+        assertEquals(",".repeat(2500) + "x" + ",".repeat(499) + "\n" + "y" + ",".repeat(2999) + "\n", csv);
+    }
+
+    @Test
+    void firstRowAndColumnAreTheOriginOfTheOutput() throws IOException {
+        String csv = encode(';', 10, 2, 4, visitor -> {
+            visitor.visit(10, 3, "D11", CellValueType.STRING);
+            visitor.visit(12, 2, "C13", CellValueType.STRING);
+            visitor.visit(12, 4, "1.5", CellValueType.NUMBER);
+        });
+
+        assertEquals(";D11;\n;;\nC13;;1.5\n", csv);
+    }
+
+    @Test
+    void cellsOutsideOfTheColumnsAreLeftOut() throws IOException {
+        String csv = encode(',', 1, 1, 2, visitor -> {
+            visitor.visit(0, 1, "above", CellValueType.STRING);
+            visitor.visit(1, 0, "left", CellValueType.STRING);
+            visitor.visit(1, 2, "C2", CellValueType.STRING);
+            visitor.visit(1, 3, "right", CellValueType.STRING);
+            visitor.visit(2, 5, "right", CellValueType.STRING);
+            visitor.visit(3, 1, "B4", CellValueType.STRING);
+        });
+
+        assertEquals(",C2\n,\nB4,\n", csv);
+    }
+
+    @Test
+    void nullValuesAreEmptyFields() throws IOException {
+        assertEquals(",\n", encode(',', 0, 0, 1, visitor -> visitor.visit(0, 1, null, CellValueType.STRING)));
+    }
+
+    private static String encode(char delimiter, int firstRow, int firstColumn, int lastColumn, Consumer<CellVisitor> cells) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvEncoder(out, delimiter, firstRow, firstColumn, lastColumn).encode(cells);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,57 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.dto.JobDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class JobServiceTest {
+
+    @Autowired
+    private JobService jobService;
+
+    @Test
+    void requestErrorsKeepTheirMessage() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("Sheet1.csv"));
+            out.write("a,b\n".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        JobDTO job = await(jobService.submitZipImport(
+            new MockMultipartFile("file", "sheets.zip", "application/zip", zip.toByteArray()), "admin"));
+
+        assertEquals("FAILED", job.getStatus());
+        assertEquals("Invalid ZIP: metadata.json not found", job.getError());
+    }
+
+    @Test
+    void otherFailuresAreNotDetailed() throws Exception {
+        JobDTO job = await(jobService.submitExcelImport(
+            new MockMultipartFile("file", "sheets.xlsx", "application/octet-stream", "not a workbook".getBytes(StandardCharsets.UTF_8)), "admin"));
+
+        assertEquals("FAILED", job.getStatus());
+        assertEquals("Job failed", job.getError());
+    }
+
+    private JobDTO await(JobDTO job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        JobDTO current = job;
+        while (!"SUCCEEDED".equals(current.getStatus()) && !"FAILED".equals(current.getStatus())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            current = jobService.getJob(job.getId(), "admin");
+        }
+        return current;
+    }
+}
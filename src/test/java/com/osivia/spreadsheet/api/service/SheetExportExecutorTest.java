@@ -0,0 +1,135 @@
+package com.osivia.spreadsheet.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SheetExportExecutorTest {
+
+    @Test
+    void resultsAreHandledInTaskOrder() throws IOException {
+        SheetExportExecutor executor = new SheetExportExecutor(3);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                int index = i;
+                tasks.add(() -> {
+                    // Later tasks finish first
+                    Thread.sleep(10 - index);
+                    return index;
+                });
+            }
+            List<Integer> handled = new ArrayList<>();
+
+            executor.runInOrder(tasks, handled::add, result -> { throw new AssertionError("discarded " + result); });
+
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), handled);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parallelismOfOneRunsOnTheCallingThread() throws IOException {
+        SheetExportExecutor executor = new SheetExportExecutor(1);
+        Thread caller = Thread.currentThread();
+        List<String> handled = new ArrayList<>();
+
+        executor.runInOrder(Arrays.<Callable<String>>asList(
+            () -> (Thread.currentThread() == caller) ? "a" : "other",
+            () -> (Thread.currentThread() == caller) ? "b" : "other"), handled::add, result -> { });
+
+        assertFalse(executor.isParallel());
+        assertEquals(Arrays.asList("a", "b"), handled);
+    }
+
+    @Test
+    void failureInterruptsRunningTasksDiscardsTheirResultsAndStartsNoOther() throws Exception {
+        SheetExportExecutor executor = new SheetExportExecutor(2);
+        try {
+            CountDownLatch slowStarted = new CountDownLatch(1);
+            CountDownLatch slowDone = new CountDownLatch(1);
+            AtomicBoolean interrupted = new AtomicBoolean();
+            AtomicBoolean queuedStarted = new AtomicBoolean();
+            List<String> discarded = Collections.synchronizedList(new ArrayList<>());
+            IOException failure = new IOException("sheet failed");
+
+            List<Callable<String>> tasks = Arrays.asList(
+                () -> {
+                    slowStarted.await();
+                    throw failure;
+                },
+                () -> {
+                    slowStarted.countDown();
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    } finally {
+                        slowDone.countDown();
+                    }
+                    // Completed despite the interruption
+                    return "late";
+                },
+                () -> {
+                    queuedStarted.set(true);
+                    return "queued";
+                });
+
+            IOException thrown = assertThrows(IOException.class,
+                () -> executor.runInOrder(tasks, result -> { throw new AssertionError("handled " + result); }, discarded::add));
+
+            assertSame(failure, thrown);
+            assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+            assertTrue(interrupted.get());
+            assertFalse(queuedStarted.get());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (discarded.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList("late"), discarded);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void handlerFailureDiscardsTheResultsInFlight() throws Exception {
+        SheetExportExecutor executor = new SheetExportExecutor(2);
+        try {
+            CountDownLatch secondDone = new CountDownLatch(1);
+            List<String> discarded = Collections.synchronizedList(new ArrayList<>());
+            List<Callable<String>> tasks = Arrays.asList(
+                () -> {
+                    secondDone.await();
+                    return "first";
+                },
+                () -> {
+                    secondDone.countDown();
+                    return "second";
+                });
+
+            assertThrows(IOException.class, () -> executor.runInOrder(tasks, result -> {
+                throw new IOException("write failed");
+            }, discarded::add));
+
+            assertEquals(Arrays.asList("second"), discarded);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.dto.CellDTO;
+import com.osivia.spreadsheet.api.dto.SpreadsheetDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class SpreadsheetServiceCacheTest {
+
+    @Autowired
+    private SpreadsheetService spreadsheetService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void secondStreamOfAnUnchangedSheetIsReadFromTheCache() {
+        SpreadsheetDTO spreadsheet = spreadsheetService.createSpreadsheet("Cached", null, "admin");
+        Long sheetId = spreadsheet.getSheets().get(0).getId();
+        spreadsheetService.updateCells(sheetId, Arrays.asList(
+            new CellDTO(0, 0, "A1"), new CellDTO(0, 2, "C1"), new CellDTO(3, 1, "12")), "admin");
+
+        List<String> first = stream(sheetId);
+        double hits = cacheHits();
+        List<String> second = stream(sheetId);
+
+        assertEquals(Arrays.asList("0,0,A1", "0,2,C1", "3,1,12"), first);
+        assertEquals(first, second);
+        assertEquals(hits + 1, cacheHits());
+    }
+
+    @Test
+    void changedSheetIsReadAgain() {
+        SpreadsheetDTO spreadsheet = spreadsheetService.createSpreadsheet("Changed", null, "admin");
+        Long sheetId = spreadsheet.getSheets().get(0).getId();
+        spreadsheetService.updateCells(sheetId, Arrays.asList(new CellDTO(0, 0, "old")), "admin");
+        stream(sheetId);
+
+        spreadsheetService.updateCells(sheetId, Arrays.asList(new CellDTO(0, 0, "new")), "admin");
+        double hits = cacheHits();
+
+        assertEquals(Arrays.asList("0,0,new"), stream(sheetId));
+        assertEquals(hits, cacheHits());
+    }
+
+    private List<String> stream(Long sheetId) {
+        List<String> cells = new ArrayList<>();
+        spreadsheetService.streamCells(sheetId, (row, column, value, type) -> cells.add(row + "," + column + "," + value));
+        return cells;
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("cache.gets").tags("cache", "sheets", "result", "hit").functionCounter().count();
+    }
+}
@@ -0,0 +1,59 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.dto.CellDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class SpreadsheetServiceCellsTest {
+
+    @Autowired
+    private SpreadsheetService spreadsheetService;
+
+    @Test
+    void negativeOrMissingPositionsAreRejected() {
+        Long sheetId = createSheet("Positions");
+
+        assertThrows(IllegalArgumentException.class, () -> spreadsheetService.updateCells(sheetId,
+            Arrays.asList(new CellDTO(0, -1, "x")), "admin"));
+        assertThrows(IllegalArgumentException.class, () -> spreadsheetService.updateCells(sheetId,
+            Arrays.asList(new CellDTO(-1, 0, "x")), "admin"));
+        assertThrows(IllegalArgumentException.class, () -> spreadsheetService.updateCells(sheetId,
+            Arrays.asList(new CellDTO(null, 0, "x")), "admin"));
+        assertThrows(IllegalArgumentException.class, () -> spreadsheetService.insertColumn(sheetId, -1,
+            Collections.emptyList(), "admin"));
+        assertEquals(Collections.emptyList(), stream(sheetId));
+    }
+
+    @Test
+    void columnInsertAndDeleteShiftTheFollowingColumns() {
+        Long sheetId = createSheet("Columns");
+        spreadsheetService.updateCells(sheetId, Arrays.asList(
+            new CellDTO(0, 0, "A1"), new CellDTO(0, 1, "B1"), new CellDTO(1, 2, "C2")), "admin");
+
+        spreadsheetService.insertColumn(sheetId, 1, Arrays.asList("new"), "admin");
+        assertEquals(Arrays.asList("0,0,A1", "0,1,new", "0,2,B1", "1,3,C2"), stream(sheetId));
+
+        spreadsheetService.deleteColumn(sheetId, 0, "admin");
+        assertEquals(Arrays.asList("0,0,new", "0,1,B1", "1,2,C2"), stream(sheetId));
+    }
+
+    private Long createSheet(String name) {
+        return spreadsheetService.createSpreadsheet(name, null, "admin").getSheets().get(0).getId();
+    }
+
+    private List<String> stream(Long sheetId) {
+        List<String> cells = new ArrayList<>();
+        spreadsheetService.streamCells(sheetId, (row, column, value, type) -> cells.add(row + "," + column + "," + value));
+        return cells;
+    }
+}
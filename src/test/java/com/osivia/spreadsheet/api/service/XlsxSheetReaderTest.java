@@ -0,0 +1,126 @@
+package com.osivia.spreadsheet.api.service;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XlsxSheetReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sharedStringsNumbersBooleansDatesFormulasAndErrorsAreRead() throws IOException {
+        File file = directory.resolve("shared.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            Sheet sheet = workbook.createSheet("Data");
+            Row first = sheet.createRow(0);
+            first.createCell(0).setCellValue("text");
+            first.createCell(2).setCellValue(1.5);
+            first.createCell(3).setCellValue(true);
+            Cell date = first.createCell(4);
+            date.setCellValue(LocalDate.of(2024, 2, 29));
+            date.setCellStyle(dateStyle);
+            Cell time = first.createCell(5);
+            time.setCellValue(LocalDateTime.of(2024, 2, 29, 13, 30));
+            time.setCellStyle(dateStyle);
+            Row second = sheet.createRow(2);
+            second.createCell(0).setCellFormula("C1*2");
+            second.createCell(1).setCellFormula("A1&\"!\"");
+            second.createCell(2).setCellErrorValue(FormulaError.DIV0.getCode());
+            // Blank cells are skipped
+            second.createCell(3);
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.createSheet("Empty");
+            write(workbook, file);
+        }
+
+        try (XlsxSheetReader reader = new XlsxSheetReader(file, new JobProgress())) {
+            assertTrue(reader.nextSheet());
+            assertEquals("Data", reader.getSheetName());
+            assertEquals(Arrays.asList(
+                "0,0,text,STRING", "0,2,1.5,NUMBER", "0,3,true,BOOLEAN",
+                "0,4,2024-02-29,DATE", "0,5,2024-02-29T13:30,DATE",
+                "2,0,3.0,NUMBER", "2,1,text!,STRING", "2,2,,STRING"), read(reader));
+
+            assertTrue(reader.nextSheet());
+            assertEquals("Empty", reader.getSheetName());
+            assertEquals(new ArrayList<>(), read(reader));
+            assertFalse(reader.nextSheet());
+        }
+    }
+
+    @Test
+    void inlineStringsAreRead() throws IOException {
+        File file = directory.resolve("inline.xlsx").toFile();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(new XSSFWorkbook(), 10, false, false);
+        try {
+            Sheet sheet = workbook.createSheet("Inline");
+            for (int row = 0; row < 30; row++) {
+                sheet.createRow(row).createCell(row % 3).setCellValue("line " + row + " <&>");
+            }
+            write(workbook, file);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+
+        JobProgress progress = new JobProgress();
+        try (XlsxSheetReader reader = new XlsxSheetReader(file, progress)) {
+            assertTrue(reader.nextSheet());
+            List<String> cells = read(reader);
+
+            assertEquals(30, cells.size());
+            assertEquals("0,0,line 0 <&>,STRING", cells.get(0));
+            assertEquals("29,2,line 29 <&>,STRING", cells.get(29));
+            assertTrue(progress.getBytes() > 0);
+        }
+    }
+
+    @Test
+    void notAnXlsxFileIsRejected() throws IOException {
+        File file = directory.resolve("plain.xlsx").toFile();
+        Files.write(file.toPath(), "a,b\n".getBytes());
+
+        assertThrows(IOException.class, () -> new XlsxSheetReader(file, new JobProgress()));
+    }
+
+    private static void write(Workbook workbook, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            workbook.write(out);
+        }
+    }
+
+    private static List<String> read(XlsxSheetReader reader) throws IOException {
+        List<String> cells = new ArrayList<>();
+        reader.readSheet((row, column, value, type) -> cells.add(row + "," + column + "," + value + "," + type));
+        return cells;
+    }
+}
@@ -0,0 +1,113 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SparseGridTest {
+
+    @Test
+    void keysOrderCellsByRowThenColumn() {
+        assertTrue(SparseGrid.key(0, Integer.MAX_VALUE) < SparseGrid.key(1, 0));
+        assertTrue(SparseGrid.key(3, 1) < SparseGrid.key(3, 2));
+        assertEquals(SparseGrid.key(7, 9), SparseGrid.key(7, 9));
+    }
+
+    @Test
+    void putGetAndOverwrite() {
+        SparseGrid grid = new SparseGrid();
+        grid.put(2, 3, "héllo", CellValueType.STRING);
+        grid.put(0, 0, "1.5", CellValueType.NUMBER);
+        grid.put(2, 3, "true", CellValueType.BOOLEAN);
+
+        assertEquals(2, grid.size());
+        assertEquals("true", grid.get(2, 3));
+        assertEquals(CellValueType.BOOLEAN, grid.getType(2, 3));
+        assertEquals("1.5", grid.get(0, 0));
+        assertNull(grid.get(3, 2));
+        assertNull(grid.getType(3, 2));
+        assertFalse(grid.contains(3, 2));
+        assertEquals(2, grid.getMaxRow());
+        assertEquals(3, grid.getMaxColumn());
+    }
+
+    @Test
+    void emptyGridHasNoExtent() {
+        SparseGrid grid = new SparseGrid();
+
+        assertEquals(-1, grid.getMaxRow());
+        assertEquals(-1, grid.getMaxColumn());
+        assertEquals(0, grid.forEach(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, (r, c, v, t) -> { }));
+    }
+
+    @Test
+    void cellsAddedOutOfOrderAreReadInOrder() {
+        SparseGrid grid = new SparseGrid();
+        grid.put(5, 1, "F2", CellValueType.STRING);
+        grid.put(0, 2, "C1", CellValueType.STRING);
+        grid.put(0, 0, "A1", CellValueType.STRING);
+        grid.put(3, 4, "E4", CellValueType.STRING);
+
+        assertEquals(Arrays.asList("0,0,A1", "0,2,C1", "3,4,E4", "5,1,F2"), read(grid, 0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, Integer.MAX_VALUE));
+        // A later put is seen by the next ordered read
+        grid.put(1, 0, "A2", CellValueType.STRING);
+        assertEquals(Arrays.asList("0,0,A1", "0,2,C1", "1,0,A2"), read(grid, 0, 1, 0, Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void rangeReadsStayWithinBoundsAndLimit() {
+        SparseGrid grid = new SparseGrid();
+        for (int row = 0; row < 10; row++) {
+            for (int column = 0; column < 10; column++) {
+                grid.put(row, column, row + ":" + column, CellValueType.STRING);
+            }
+        }
+
+        assertEquals(Arrays.asList("2,3,2:3", "2,4,2:4", "3,3,3:3", "3,4,3:4"), read(grid, 2, 3, 3, 4, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList("8,9,8:9", "9,9,9:9"), read(grid, 8, 20, 9, 9, Integer.MAX_VALUE));
+        assertEquals(3, read(grid, 0, 9, 0, 9, 3).size());
+    }
+
+    @Test
+    void manyCellsGrowTheTableAndTheArena() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            SparseGrid grid = new SparseGrid(16, offHeap);
+            Map<Long, String> expected = new TreeMap<>();
+            Random random = new Random(7);
+            for (int i = 0; i < 20000; i++) {
+                int row = random.nextInt(2000);
+                int column = random.nextInt(50);
+                String value = "v" + i + "-" + "x".repeat(random.nextInt(40));
+                grid.put(row, column, value, CellValueType.STRING);
+                expected.put(SparseGrid.key(row, column), value);
+            }
+
+            assertEquals(expected.size(), grid.size());
+            List<String> values = new ArrayList<>();
+            grid.forEach((row, column, value, type) -> {
+                assertEquals(expected.get(SparseGrid.key(row, column)), value);
+                values.add(value);
+            });
+            assertEquals(new ArrayList<>(expected.values()), values);
+            assertTrue(grid.memoryUsage() > 0);
+        }
+    }
+
+    private static List<String> read(SparseGrid grid, int fromRow, int toRow, int fromCol, int toCol, int max) {
+        List<String> cells = new ArrayList<>();
+        int visited = grid.forEach(fromRow, toRow, fromCol, toCol, max, (row, column, value, type) -> cells.add(row + "," + column + "," + value));
+        assertEquals(cells.size(), visited);
+        return cells;
+    }
+}
@@ -0,0 +1,104 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.entity.CellValueType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TileTest {
+
+    @Test
+    void encodeAndDecodeKeepValuesAndTypes() {
+        Tile tile = new Tile();
+        tile.set(0, 0, "text", CellValueType.STRING);
+        tile.set(0, Tile.COLUMNS - 1, "00123", CellValueType.STRING);
+        tile.set(17, 3, "42.5", CellValueType.NUMBER);
+        tile.set(Tile.ROWS - 1, Tile.COLUMNS - 1, "TRUE", CellValueType.BOOLEAN);
+        tile.set(100, 5, "2024-01-31T10:00:00", CellValueType.DATE);
+        tile.set(200, 6, "ünïcødé €", CellValueType.STRING);
+
+        Tile decoded = Tile.decode(tile.encode());
+
+        assertEquals(6, decoded.getCount());
+        assertEquals(cells(tile), cells(decoded));
+        assertEquals(CellValueType.STRING, decoded.getType(0, Tile.COLUMNS - 1));
+        assertEquals("ünïcødé €", decoded.get(200, 6));
+        assertNull(decoded.get(1, 1));
+    }
+
+    @Test
+    void emptyTileRoundTrips() {
+        Tile decoded = Tile.decode(new Tile().encode());
+
+        assertTrue(decoded.isEmpty());
+        assertEquals(0, decoded.getCount());
+    }
+
+    @Test
+    void unknownFormatIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(1);
+            out.writeInt(0);
+        }
+
+        assertThrows(IllegalStateException.class, () -> Tile.decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void clearingKeepsTheCountInStep() {
+        Tile tile = new Tile();
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 3; column++) {
+                tile.set(row, column, row + "," + column, CellValueType.STRING);
+            }
+        }
+        tile.set(0, 0, "again", CellValueType.STRING);
+        assertEquals(12, tile.getCount());
+
+        tile.clearRows(1, 2);
+        assertEquals(6, tile.getCount());
+        assertFalse(tile.hasRow(1));
+        assertTrue(tile.hasRow(3));
+
+        tile.clearColumn(0);
+        assertEquals(4, tile.getCount());
+        tile.clear(0, 1);
+        tile.clear(0, 1);
+        assertEquals(3, tile.getCount());
+        assertEquals(Arrays.asList("0,2,0,2", "3,1,3,1", "3,2,3,2"), cells(tile));
+    }
+
+    @Test
+    void mergeCopiesCellsOverExistingOnes() {
+        Tile tile = new Tile();
+        tile.set(0, 0, "old", CellValueType.STRING);
+        tile.set(1, 1, "kept", CellValueType.STRING);
+        Tile other = new Tile();
+        other.set(0, 0, "1", CellValueType.NUMBER);
+        other.set(2, 2, "new", CellValueType.STRING);
+
+        tile.merge(other);
+
+        assertEquals(Arrays.asList("0,0,1", "1,1,kept", "2,2,new"), cells(tile));
+        assertEquals(CellValueType.NUMBER, tile.getType(0, 0));
+    }
+
+    private static List<String> cells(Tile tile) {
+        List<String> cells = new ArrayList<>();
+        tile.forEach((row, column, value, type) -> cells.add(row + "," + column + "," + value));
+        return cells;
+    }
+}
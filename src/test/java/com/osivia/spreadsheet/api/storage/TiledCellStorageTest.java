@@ -0,0 +1,110 @@
+package com.osivia.spreadsheet.api.storage;
+
+import com.osivia.spreadsheet.api.dto.CellDTO;
+import com.osivia.spreadsheet.api.dto.ColumnStatsDTO;
+import com.osivia.spreadsheet.api.dto.SheetDTO;
+import com.osivia.spreadsheet.api.entity.CellStorageMode;
+import com.osivia.spreadsheet.api.service.SpreadsheetService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Edits of tiled sheets give the same cells and statistics as the same edits of per cell sheets,
+ * in particular around the tile boundaries
+ */
+@SpringBootTest
+class TiledCellStorageTest {
+
+    private static final int LAST_ROW = Tile.ROWS - 1;
+
+    private static final int LAST_COLUMN = Tile.COLUMNS - 1;
+
+    @Autowired
+    private SpreadsheetService spreadsheetService;
+
+    private Long cellsSheet;
+
+    private Long tilesSheet;
+
+    @BeforeEach
+    void createSheets() {
+        Long spreadsheetId = spreadsheetService.createSpreadsheet("Tiles", null, "admin").getId();
+        cellsSheet = spreadsheetService.createSheet(spreadsheetId, "Cells", CellStorageMode.CELLS, "admin").getId();
+        tilesSheet = spreadsheetService.createSheet(spreadsheetId, "Tiles", CellStorageMode.TILES, "admin").getId();
+
+        List<CellDTO> cells = new ArrayList<>();
+        for (int row : new int[]{0, 1, LAST_ROW - 1, LAST_ROW, LAST_ROW + 1, 2 * Tile.ROWS + 3}) {
+            for (int column : new int[]{0, 2, LAST_COLUMN, LAST_COLUMN + 1, 3 * Tile.COLUMNS}) {
+                cells.add(new CellDTO(row, column, row + "." + column));
+            }
+        }
+        edit(sheetId -> spreadsheetService.updateCells(sheetId, cells, "admin"));
+    }
+
+    @Test
+    void cellUpdatesAndDeletes() {
+        edit(sheetId -> spreadsheetService.updateCells(sheetId, Arrays.asList(
+            new CellDTO(LAST_ROW, LAST_COLUMN, "changed"),
+            new CellDTO(LAST_ROW + 1, LAST_COLUMN + 1, ""),
+            new CellDTO(0, 0, null),
+            new CellDTO(5, 40, "true")), "admin"));
+    }
+
+    @Test
+    void columnInsertsAndDeletesAcrossTiles() {
+        edit(sheetId -> spreadsheetService.insertColumn(sheetId, LAST_COLUMN, Arrays.asList("a", "", "c"), "admin"));
+        edit(sheetId -> spreadsheetService.deleteColumn(sheetId, 0, "admin"));
+        edit(sheetId -> spreadsheetService.deleteColumn(sheetId, LAST_COLUMN + 1, "admin"));
+        edit(sheetId -> spreadsheetService.insertColumn(sheetId, 3 * Tile.COLUMNS + 5, Arrays.asList("past"), "admin"));
+    }
+
+    @Test
+    void rowInsertsAndDeletesAcrossTiles() {
+        edit(sheetId -> spreadsheetService.insertRow(sheetId, LAST_ROW, Arrays.asList("x", "y"), "admin"));
+        edit(sheetId -> spreadsheetService.deleteRows(sheetId, LAST_ROW - 3, 6, "admin"));
+        edit(sheetId -> spreadsheetService.appendRow(sheetId, Arrays.asList("1", "2", "3"), "admin"));
+        edit(sheetId -> spreadsheetService.updateCells(sheetId, Arrays.asList(new CellDTO(LAST_ROW, 1, "after")), "admin"));
+    }
+
+    /**
+     * Applies an edit to both sheets, then compares them
+     */
+    private void edit(Consumer<Long> edit) {
+        edit.accept(cellsSheet);
+        edit.accept(tilesSheet);
+
+        List<String> expected = stream(cellsSheet);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, stream(tilesSheet));
+
+        SheetDTO cells = spreadsheetService.getSheetHeader(cellsSheet, "admin");
+        SheetDTO tiles = spreadsheetService.getSheetHeader(tilesSheet, "admin");
+        assertEquals(cells.getCellCount(), tiles.getCellCount());
+        assertEquals(cells.getMaxRow(), tiles.getMaxRow());
+        assertEquals(cells.getMaxColumn(), tiles.getMaxColumn());
+
+        for (int column : new int[]{0, LAST_COLUMN, LAST_COLUMN + 1}) {
+            ColumnStatsDTO cellsStats = spreadsheetService.getColumnStats(cellsSheet, column, "admin");
+            ColumnStatsDTO tilesStats = spreadsheetService.getColumnStats(tilesSheet, column, "admin");
+            assertEquals(cellsStats.getCount(), tilesStats.getCount());
+            assertEquals(cellsStats.getNumericCount(), tilesStats.getNumericCount());
+            assertEquals(cellsStats.getSum(), tilesStats.getSum());
+        }
+    }
+
+    private List<String> stream(Long sheetId) {
+        List<String> cells = new ArrayList<>();
+        spreadsheetService.streamCells(sheetId, (row, column, value, type) -> cells.add(row + "," + column + "," + value + "," + type));
+        return cells;
+    }
+}